@@ -0,0 +1,70 @@
+package com.coverage.analyzer.benchmarks;
+
+import com.coverage.analyzer.ClassBytesCache;
+import com.coverage.analyzer.CoverageRunner;
+import com.coverage.analyzer.JacocoAgentLoader;
+import com.coverage.analyzer.MethodCoverageMapper;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个测试的热路径：解码执行数据并把命中的探针归属到方法。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyzeCoverageBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int classCount;
+
+    @Param({"10", "100"})
+    public int touchedClasses;
+
+    private Path classesDir;
+    private MethodCoverageMapper mapper;
+    private byte[] executionData;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SyntheticFixtures.silenceConsole();
+        classesDir = SyntheticFixtures.generateClassesDir(classCount, 10);
+        ClassBytesCache cache = ClassBytesCache.load(classesDir);
+        mapper = SyntheticFixtures.mapProbeTables(cache);
+        executionData = SyntheticFixtures.generateExecutionData(cache, touchedClasses, 42L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticFixtures.deleteRecursively(classesDir);
+    }
+
+    @Benchmark
+    public ExecutionDataStore decodeExecutionData() throws IOException {
+        return JacocoAgentLoader.readExecutionData(executionData);
+    }
+
+    @Benchmark
+    public List<String> analyzeCoverage() {
+        return CoverageRunner.analyzeCoverage(executionData, mapper);
+    }
+}
@@ -0,0 +1,60 @@
+package com.coverage.analyzer.benchmarks;
+
+import com.coverage.analyzer.ClassBytesCache;
+import com.coverage.analyzer.MethodCoverageMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动阶段的类映射：类字节缓存和探针表的构建。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MethodMappingBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int classCount;
+
+    private Path classesDir;
+    private ClassBytesCache cache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SyntheticFixtures.silenceConsole();
+        classesDir = SyntheticFixtures.generateClassesDir(classCount, 10);
+        cache = ClassBytesCache.load(classesDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticFixtures.deleteRecursively(classesDir);
+    }
+
+    @Benchmark
+    public ClassBytesCache loadClassBytesCache() throws IOException {
+        return ClassBytesCache.load(classesDir);
+    }
+
+    @Benchmark
+    public MethodCoverageMapper mapProbeTables() {
+        return SyntheticFixtures.mapProbeTables(cache);
+    }
+}
@@ -0,0 +1,53 @@
+package com.coverage.analyzer.benchmarks;
+
+import com.coverage.analyzer.ProjectParser;
+import com.coverage.analyzer.models.ProjectModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 源码树解析。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectParserBenchmark {
+    @Param({"100", "1000"})
+    public int fileCount;
+
+    private Path sourceDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SyntheticFixtures.silenceConsole();
+        sourceDir = SyntheticFixtures.generateSourceTree(fileCount, 10);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticFixtures.deleteRecursively(sourceDir);
+    }
+
+    @Benchmark
+    public ProjectModel parse() throws IOException {
+        return new ProjectParser(sourceDir).parse();
+    }
+}
@@ -0,0 +1,77 @@
+package com.coverage.analyzer.benchmarks;
+
+import com.coverage.analyzer.ResultExporter;
+import com.coverage.analyzer.models.CoverageResult;
+import com.coverage.analyzer.models.ProjectModel;
+import com.coverage.analyzer.models.ProjectStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 大规模覆盖结果的构建与导出。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ResultExporterBenchmark {
+    @Param({"1000", "10000"})
+    public int tests;
+
+    @Param({"100"})
+    public int methodsPerTest;
+
+    private CoverageResult coverageResult;
+    private ProjectModel model;
+    private Path outputDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SyntheticFixtures.silenceConsole();
+        coverageResult = SyntheticFixtures.generateCoverageResult(tests, 50000, methodsPerTest, 42L);
+        ProjectStats stats = new ProjectStats();
+        stats.setLocation("bench");
+        stats.setNumTestMethods(tests);
+        model = new ProjectModel(null, stats, new ArrayList<>());
+        outputDir = Files.createTempDirectory("bench-report");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticFixtures.deleteRecursively(outputDir);
+    }
+
+    @Benchmark
+    public CoverageResult buildCoverageResult() {
+        return SyntheticFixtures.generateCoverageResult(tests, 50000, methodsPerTest, 7L);
+    }
+
+    @Benchmark
+    public void exportJson() throws IOException {
+        new ResultExporter(outputDir).export(model, coverageResult);
+    }
+
+    @Benchmark
+    public void exportBinary() throws IOException {
+        new ResultExporter(outputDir).exportBinary(model, coverageResult);
+    }
+}
@@ -0,0 +1,204 @@
+package com.coverage.analyzer.benchmarks;
+
+import com.coverage.analyzer.ClassBytesCache;
+import com.coverage.analyzer.MethodCoverageMapper;
+import com.coverage.analyzer.ProbeMethodTable;
+import com.coverage.analyzer.models.CoverageResult;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * 基准测试使用的合成数据：生成的类目录、执行数据、源码树和覆盖结果。
+ */
+public final class SyntheticFixtures {
+    private static final int PACKAGES = 20;
+
+    private SyntheticFixtures() {
+    }
+
+    /**
+     * 屏蔽被测代码的控制台输出，基准只衡量算法本身的开销。
+     */
+    public static void silenceConsole() {
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+    }
+
+    /**
+     * 生成包含 classCount 个类的 classes 目录，每个类有 methodsPerClass 个带分支和行号的方法。
+     */
+    public static Path generateClassesDir(int classCount, int methodsPerClass) throws IOException {
+        Path dir = Files.createTempDirectory("bench-classes");
+        for (int i = 0; i < classCount; i++) {
+            String internalName = "bench/p" + (i % PACKAGES) + "/Gen" + i;
+            Path classFile = dir.resolve(internalName + ".class");
+            Files.createDirectories(classFile.getParent());
+            Files.write(classFile, generateClass(internalName, methodsPerClass));
+        }
+        return dir;
+    }
+
+    public static byte[] generateClass(String internalName, int methodCount) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, internalName, null, "java/lang/Object", null);
+
+        MethodVisitor init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        Label start = new Label();
+        init.visitLabel(start);
+        init.visitLineNumber(1, start);
+        init.visitVarInsn(Opcodes.ALOAD, 0);
+        init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        for (int k = 0; k < methodCount; k++) {
+            int line = 10 + k * 5;
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "m" + k, "(I)I", null, null);
+            mv.visitCode();
+
+            Label condition = new Label();
+            mv.visitLabel(condition);
+            mv.visitLineNumber(line, condition);
+            mv.visitVarInsn(Opcodes.ILOAD, 1);
+            mv.visitLdcInsn(k);
+            Label otherwise = new Label();
+            mv.visitJumpInsn(Opcodes.IF_ICMPLE, otherwise);
+
+            Label then = new Label();
+            mv.visitLabel(then);
+            mv.visitLineNumber(line + 1, then);
+            mv.visitVarInsn(Opcodes.ILOAD, 1);
+            mv.visitLdcInsn(k);
+            mv.visitInsn(Opcodes.ISUB);
+            mv.visitInsn(Opcodes.IRETURN);
+
+            mv.visitLabel(otherwise);
+            mv.visitLineNumber(line + 2, otherwise);
+            mv.visitVarInsn(Opcodes.ILOAD, 1);
+            mv.visitLdcInsn(k);
+            mv.visitInsn(Opcodes.IADD);
+            mv.visitInsn(Opcodes.IRETURN);
+
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * 生成一次测试的执行数据：随机选取 touchedClasses 个类，每个类约一半探针被命中。
+     */
+    public static byte[] generateExecutionData(ClassBytesCache cache, int touchedClasses, long seed)
+            throws IOException {
+        Random random = new Random(seed);
+        List<ClassBytesCache.Entry> entries = new ArrayList<>(cache.getEntries());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ExecutionDataWriter writer = new ExecutionDataWriter(bytes);
+        for (int i = 0; i < touchedClasses && !entries.isEmpty(); i++) {
+            ClassBytesCache.Entry entry = entries.remove(random.nextInt(entries.size()));
+            ProbeMethodTable table = ProbeMethodTable.build(entry.getBytes());
+            boolean[] probes = new boolean[table.getProbeCount()];
+            for (int p = 0; p < probes.length; p++) {
+                probes[p] = random.nextBoolean();
+            }
+            writer.visitClassExecution(new ExecutionData(entry.getClassId(), table.getClassName().replace('.', '/'), probes));
+        }
+        return bytes.toByteArray();
+    }
+
+    public static MethodCoverageMapper mapProbeTables(ClassBytesCache cache) {
+        MethodCoverageMapper mapper = new MethodCoverageMapper();
+        mapper.mapProbeTables(cache);
+        return mapper;
+    }
+
+    /**
+     * 生成包含 fileCount 个测试类的源码树。
+     */
+    public static Path generateSourceTree(int fileCount, int testsPerFile) throws IOException {
+        Path dir = Files.createTempDirectory("bench-sources");
+        for (int i = 0; i < fileCount; i++) {
+            String packageName = "bench.p" + (i % PACKAGES);
+            StringBuilder source = new StringBuilder();
+            source.append("package ").append(packageName).append(";\n\n");
+            source.append("import org.junit.Test;\n\n");
+            source.append("public class GenTest").append(i).append(" {\n");
+            for (int t = 0; t < testsPerFile; t++) {
+                source.append("    @Test\n");
+                source.append("    public void case").append(t).append("() {\n");
+                source.append("        int value = helper(").append(t).append(");\n");
+                source.append("        if (value < 0) {\n");
+                source.append("            throw new AssertionError(\"negative\");\n");
+                source.append("        }\n");
+                source.append("    }\n\n");
+            }
+            source.append("    private int helper(int a) {\n");
+            source.append("        return a * 2;\n");
+            source.append("    }\n");
+            source.append("}\n");
+
+            Path file = dir.resolve(packageName.replace('.', '/')).resolve("GenTest" + i + ".java");
+            Files.createDirectories(file.getParent());
+            Files.write(file, source.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return dir;
+    }
+
+    /**
+     * 生成 tests × methodsPerTest 的覆盖结果，方法从 methodCount 个方法中随机选取。
+     */
+    public static CoverageResult generateCoverageResult(int tests, int methodCount, int methodsPerTest, long seed) {
+        Random random = new Random(seed);
+        String[] methods = new String[methodCount];
+        for (int m = 0; m < methodCount; m++) {
+            methods[m] = "bench.p" + (m % PACKAGES) + ".Gen" + (m / 10) + "#m" + (m % 10) + "(I)I";
+        }
+
+        CoverageResult result = new CoverageResult();
+        for (int t = 0; t < tests; t++) {
+            List<String> covered = new ArrayList<>(methodsPerTest);
+            for (int m = 0; m < methodsPerTest; m++) {
+                covered.add(methods[random.nextInt(methodCount)]);
+            }
+            result.addCoverage("bench.GenTest" + (t / 10) + "#case" + (t % 10), covered);
+        }
+        return result;
+    }
+
+    public static void deleteRecursively(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
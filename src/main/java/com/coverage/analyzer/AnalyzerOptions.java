@@ -0,0 +1,131 @@
+package com.coverage.analyzer;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Main 的命令行参数：选项以 -- 开头，其余按位置解析为项目路径、输出路径和规则集路径。
+ */
+public class AnalyzerOptions {
+    public static final String USAGE = "Usage: java -javaagent:jacocoagent.jar=output=none -jar coverage-analyzer.jar " +
+            "[--workers N] [--module-parallelism N] [--stream] [--binary] [--batch] [--platform] [--shard i/N] [--memory-budget MB] " +
+            "[--offline] [--granularity method|line] [--resume] [--changed-since DIR] [--no-history] [--single-module] [--module-classpath PATHS] [--daemon PORT] [--verbose] [--log-level error|warn|info|debug] " +
+            "<project-path> [output-path] [ruleset-path]";
+
+    Path projectPath;
+    Path outputPath;
+    Path rulesetPath;
+    int workers = 1;
+    // 多模块项目中同时运行的模块数，0 表示按 CPU 核数
+    int moduleParallelism;
+    boolean stream;
+    boolean binary;
+    boolean batch;
+    boolean platform;
+    TestShard shard;
+    long memoryBudgetMb;
+    boolean offline;
+    boolean lineGranularity;
+    boolean resume;
+    Path changedSince;
+    boolean history = true;
+    boolean singleModule;
+    List<Path> moduleClasspath = new ArrayList<>();
+    int daemonPort = -1;
+    Log.Level logLevel = Log.Level.INFO;
+
+    public static AnalyzerOptions parse(String[] args) {
+        AnalyzerOptions options = new AnalyzerOptions();
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("--workers".equals(arg)) {
+                options.workers = Integer.parseInt(value(args, ++i, arg));
+            } else if ("--module-parallelism".equals(arg)) {
+                options.moduleParallelism = Integer.parseInt(value(args, ++i, arg));
+            } else if ("--stream".equals(arg)) {
+                options.stream = true;
+            } else if ("--binary".equals(arg)) {
+                options.binary = true;
+            } else if ("--batch".equals(arg)) {
+                options.batch = true;
+            } else if ("--platform".equals(arg)) {
+                options.platform = true;
+            } else if ("--shard".equals(arg)) {
+                options.shard = TestShard.parse(value(args, ++i, arg));
+            } else if ("--memory-budget".equals(arg)) {
+                options.memoryBudgetMb = Long.parseLong(value(args, ++i, arg));
+            } else if ("--offline".equals(arg)) {
+                options.offline = true;
+            } else if ("--granularity".equals(arg)) {
+                String granularity = value(args, ++i, arg);
+                if (!"method".equals(granularity) && !"line".equals(granularity)) {
+                    throw new IllegalArgumentException("Unknown granularity: " + granularity);
+                }
+                options.lineGranularity = "line".equals(granularity);
+            } else if ("--resume".equals(arg)) {
+                options.resume = true;
+            } else if ("--changed-since".equals(arg)) {
+                options.changedSince = Paths.get(value(args, ++i, arg));
+            } else if ("--no-history".equals(arg)) {
+                options.history = false;
+            } else if ("--single-module".equals(arg)) {
+                options.singleModule = true;
+            } else if ("--module-classpath".equals(arg)) {
+                options.moduleClasspath = parseClasspath(value(args, ++i, arg));
+            } else if ("--daemon".equals(arg)) {
+                options.daemonPort = Integer.parseInt(value(args, ++i, arg));
+            } else if ("--verbose".equals(arg)) {
+                options.logLevel = Log.Level.DEBUG;
+            } else if ("--log-level".equals(arg)) {
+                options.logLevel = Log.Level.parse(value(args, ++i, arg));
+            } else if (arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            } else {
+                positional.add(arg);
+            }
+        }
+
+        if (positional.isEmpty()) {
+            throw new IllegalArgumentException("Missing project path");
+        }
+        options.projectPath = Paths.get(positional.get(0));
+        options.outputPath = positional.size() > 1 ? Paths.get(positional.get(1)) : Paths.get(".");
+        options.rulesetPath = positional.size() > 2 ? Paths.get(positional.get(2)) : null;
+        return options;
+    }
+
+    /**
+     * 以平台路径分隔符分隔的路径列表。
+     */
+    static List<Path> parseClasspath(String classpath) {
+        List<Path> paths = new ArrayList<>();
+        for (String entry : classpath.split(File.pathSeparator)) {
+            if (!entry.isEmpty()) {
+                paths.add(Paths.get(entry));
+            }
+        }
+        return paths;
+    }
+
+    static String joinClasspath(List<Path> paths) {
+        StringBuilder classpath = new StringBuilder();
+        for (Path path : paths) {
+            if (classpath.length() > 0) {
+                classpath.append(File.pathSeparator);
+            }
+            classpath.append(path);
+        }
+        return classpath.toString();
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+}
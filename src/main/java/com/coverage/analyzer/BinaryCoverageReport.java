@@ -0,0 +1,264 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.CoverageResult;
+import com.coverage.analyzer.models.MethodDictionary;
+import com.coverage.analyzer.models.ProjectModel;
+import com.coverage.analyzer.models.ProjectStats;
+import org.roaringbitmap.RoaringBitmap;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * 二进制覆盖矩阵 coverage_report.bin 的读写。
+ *
+ * <pre>
+ * int    magic "COVM", int version
+ * string location, int num_java_files, int num_classes, int num_methods, int num_test_methods
+ * int    方法数, string[] 方法标识（下标即方法 id）
+ * int    测试数, { string 测试标识, long 位图偏移, int 位图长度 }[]
+ * byte[] 各测试的 RoaringBitmap（可移植序列化格式），偏移相对于本段起始位置
+ * </pre>
+ *
+ * 读取时整个文件被内存映射，打开时只跳读一遍方法表和测试表，记下每个条目在映射区中的位置；
+ * 方法标识、测试标识和位图都在访问时才从映射区读取，位图以 {@link ImmutableRoaringBitmap} 直接访问，无需反序列化。
+ */
+public class BinaryCoverageReport {
+    public static final String FILE_NAME = "coverage_report.bin";
+
+    private static final int MAGIC = 0x434F564D;
+    private static final int VERSION = 1;
+
+    private final ByteBuffer buffer;
+    private final ProjectStats stats = new ProjectStats();
+    // 各方法标识（含长度前缀）在映射区中的位置，下标即方法 id
+    private final int[] methodPositions;
+    // 各测试条目（测试标识、位图偏移、位图长度）在映射区中的位置
+    private final int[] testPositions;
+    private final int bitmapSectionStart;
+
+    private BinaryCoverageReport(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a binary coverage report");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary coverage report version: " + version);
+        }
+
+        stats.setLocation(readString(buffer));
+        stats.addJavaFiles(buffer.getInt());
+        stats.addClasses(buffer.getInt());
+        stats.addMethods(buffer.getInt());
+        stats.setNumTestMethods(buffer.getInt());
+
+        int methodCount = buffer.getInt();
+        methodPositions = new int[methodCount];
+        for (int i = 0; i < methodCount; i++) {
+            methodPositions[i] = buffer.position();
+            skipString(buffer);
+        }
+
+        int testCount = buffer.getInt();
+        testPositions = new int[testCount];
+        for (int i = 0; i < testCount; i++) {
+            testPositions[i] = buffer.position();
+            skipString(buffer);
+            buffer.position(buffer.position() + Long.BYTES + Integer.BYTES);
+        }
+        bitmapSectionStart = buffer.position();
+    }
+
+    public static BinaryCoverageReport open(Path reportFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(reportFile, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Binary coverage report too large to map: " + reportFile);
+            }
+            // 映射在通道关闭后仍然有效
+            return new BinaryCoverageReport(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static void write(Path reportFile, ProjectModel model, CoverageResult coverageResult) throws IOException {
+        ProjectStats stats = model.getStats();
+        MethodDictionary dictionary = coverageResult.getMethodDictionary();
+        List<String> testMethods = new ArrayList<>(coverageResult.getTestMethods());
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(reportFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            writeString(out, stats.getLocation());
+            out.writeInt(stats.getNumJavaFiles());
+            out.writeInt(stats.getNumClasses());
+            out.writeInt(stats.getNumMethods());
+            out.writeInt(stats.getNumTestMethods());
+
+            int methodCount = dictionary.size();
+            out.writeInt(methodCount);
+            for (int id = 0; id < methodCount; id++) {
+                writeString(out, dictionary.methodOf(id));
+            }
+
+            out.writeInt(testMethods.size());
+            long offset = 0;
+            for (String testMethod : testMethods) {
+                int length = coverageResult.getCoveredMethodIds(testMethod).serializedSizeInBytes();
+                writeString(out, testMethod);
+                out.writeLong(offset);
+                out.writeInt(length);
+                offset += length;
+            }
+
+            for (String testMethod : testMethods) {
+                coverageResult.getCoveredMethodIds(testMethod).serialize(out);
+            }
+        }
+        Log.info("Binary coverage report saved to: " + reportFile);
+    }
+
+    public ProjectStats getStats() {
+        return stats;
+    }
+
+    /**
+     * 方法表的只读视图，元素在访问时从映射区解码。
+     */
+    public List<String> getMethods() {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return readString(methodPositions[index]);
+            }
+
+            @Override
+            public int size() {
+                return methodPositions.length;
+            }
+        };
+    }
+
+    /**
+     * 测试表的只读视图，元素在访问时从映射区解码。
+     */
+    public List<String> getTestMethods() {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return readString(testPositions[index]);
+            }
+
+            @Override
+            public int size() {
+                return testPositions.length;
+            }
+        };
+    }
+
+    public ImmutableRoaringBitmap getCoveredMethodIds(int testIndex) {
+        // 测试条目：测试标识之后依次是位图偏移和位图长度
+        int entry = testPositions[testIndex];
+        int fields = entry + Integer.BYTES + buffer.getInt(entry);
+        int start = bitmapSectionStart + (int) buffer.getLong(fields);
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(start);
+        slice.limit(start + buffer.getInt(fields + Long.BYTES));
+        return new ImmutableRoaringBitmap(slice.slice());
+    }
+
+    public List<String> getCoveredMethods(int testIndex) {
+        List<String> covered = new ArrayList<>();
+        getCoveredMethodIds(testIndex).forEach((int id) -> covered.add(readString(methodPositions[id])));
+        return covered;
+    }
+
+    /**
+     * 查询覆盖指定方法的测试，只访问各测试的位图，不解码方法列表。
+     * 需要逐个检查所有测试的位图，开销为 O(测试数)；频繁查询应使用 {@link ReverseCoverageIndex}。
+     */
+    public List<String> findTestsCoveringMethod(String method) {
+        List<String> tests = new ArrayList<>();
+        int methodId = methodIdOf(method);
+        if (methodId < 0) {
+            return tests;
+        }
+        for (int i = 0; i < testPositions.length; i++) {
+            if (getCoveredMethodIds(i).contains(methodId)) {
+                tests.add(readString(testPositions[i]));
+            }
+        }
+        return tests;
+    }
+
+    /**
+     * 在映射区中逐个比较方法标识的 UTF-8 字节，不解码整张方法表；找不到时返回 -1。
+     */
+    private int methodIdOf(String method) {
+        byte[] target = method.getBytes(StandardCharsets.UTF_8);
+        for (int id = 0; id < methodPositions.length; id++) {
+            int position = methodPositions[id];
+            if (buffer.getInt(position) != target.length) {
+                continue;
+            }
+            int bytes = position + Integer.BYTES;
+            int i = 0;
+            while (i < target.length && buffer.get(bytes + i) == target[i]) {
+                i++;
+            }
+            if (i == target.length) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 转换为 JSON 格式的 coverage_report.json，与 {@link ResultExporter} 的输出一致。
+     */
+    public void exportJson(Path outputPath) throws IOException {
+        try (StreamingResultExporter writer = new StreamingResultExporter(outputPath, stats, stats.getNumTestMethods())) {
+            for (int i = 0; i < testPositions.length; i++) {
+                writer.onCoverage(readString(testPositions[i]), getCoveredMethods(i));
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skipString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        buffer.position(buffer.position() + length);
+    }
+
+    /**
+     * 读取映射区中指定位置的字符串，不改变共享缓冲区的位置，可并发调用。
+     */
+    private String readString(int position) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        return readString(view);
+    }
+}
@@ -0,0 +1,27 @@
+package com.coverage.analyzer;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 将二进制覆盖报告转换为 coverage_report.json。
+ */
+public class BinaryReportConverter {
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: java -cp coverage-analyzer.jar com.coverage.analyzer.BinaryReportConverter <coverage_report.bin> [output-path]");
+            System.exit(1);
+        }
+
+        Path reportFile = Paths.get(args[0]);
+        Path outputPath = args.length > 1 ? Paths.get(args[1]) : Paths.get(".");
+
+        try {
+            BinaryCoverageReport report = BinaryCoverageReport.open(reportFile);
+            report.exportJson(outputPath);
+        } catch (Exception e) {
+            Log.error("Error converting report: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.CoverageResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 变更影响测试选择：根据上一次的覆盖报告和类指纹，只重新运行受变更影响的测试，
+ * 其余测试沿用上一次的覆盖结果。受影响的测试包括：
+ * 上次覆盖了变化类中任一方法的测试、所在测试类或其 test-classes 中的父类发生变化的测试、
+ * 所在测试类或其父类的字节码直接引用了变化类的测试、上次覆盖为空的测试、
+ * 上次报告中没有的新测试（包括上次没有正常结束的测试）。
+ * 覆盖结果不含构造器和静态初始化：只经由其他生产类间接执行了变化类的构造器或静态初始化、
+ * 而没有执行其任何方法的测试不会被选中，这是已知的遗漏。
+ * 变化的测试工具类、夹具等无法归属到具体测试，资源文件的变化也无法定位，
+ * 出现这两种情况时重新运行全部测试。
+ */
+public class ChangeImpactSelector {
+    private final Path previousOutputPath;
+    private final ClassFingerprints current;
+    private final CoverageResult previousCoverage = new CoverageResult();
+    private final ClassFingerprints previousFingerprints;
+
+    /**
+     * 构造时即读入上一次的报告，之后输出目录中的报告可以被覆盖（两次运行可使用同一输出目录）。
+     */
+    public ChangeImpactSelector(Path previousOutputPath, ClassFingerprints current) throws IOException {
+        this.previousOutputPath = previousOutputPath;
+        this.current = current;
+        this.previousFingerprints = ClassFingerprints.load(previousOutputPath);
+        Path report = previousOutputPath.resolve("coverage_report.json");
+        if (previousFingerprints != null && Files.exists(report)) {
+            readReport(report);
+        }
+    }
+
+    /**
+     * 把未受影响测试的上次结果加入 result，返回需要重新运行的测试。
+     */
+    public List<String> select(List<String> testMethods, CoverageResult result) {
+        if (previousFingerprints == null || previousCoverage.getTestMethods().isEmpty()) {
+            Log.warn("No previous report with class fingerprints in " + previousOutputPath + ", running all tests");
+            return testMethods;
+        }
+
+        if (current.resourcesChanged(previousFingerprints)) {
+            return rerunAll(testMethods, "resource files changed");
+        }
+        Set<String> changedClasses = current.changedClasses(previousFingerprints);
+        Set<String> changedTestClasses = current.changedTestClasses(previousFingerprints);
+        Log.info("Changed since previous run: " + changedClasses.size() + " classes, " +
+                changedTestClasses.size() + " test classes");
+
+        // 测试类及其父类；上次报告中测试所在的类（可能已被删除）也能归属
+        Map<String, Set<String>> hierarchies = new HashMap<>();
+        Set<String> attributable = new HashSet<>();
+        for (String testMethod : testMethods) {
+            attributable.addAll(hierarchies.computeIfAbsent(testMethod.split("#")[0], current::testClassHierarchy));
+        }
+        for (String testMethod : previousCoverage.getTestMethods()) {
+            attributable.add(testMethod.split("#")[0]);
+        }
+        Set<String> unattributed = new TreeSet<>(changedTestClasses);
+        unattributed.removeAll(attributable);
+        if (!unattributed.isEmpty()) {
+            // 测试工具类、夹具等可能被任意测试使用
+            return rerunAll(testMethods, "changed test classes outside any test class hierarchy: " + unattributed);
+        }
+
+        List<String> affected = new ArrayList<>();
+        for (String testMethod : testMethods) {
+            Set<String> hierarchy = hierarchies.get(testMethod.split("#")[0]);
+            if (!previousCoverage.getTestMethods().contains(testMethod) ||
+                    !Collections.disjoint(hierarchy, changedTestClasses) ||
+                    referencesChangedClass(hierarchy, changedClasses)) {
+                affected.add(testMethod);
+                continue;
+            }
+            List<String> coveredMethods = previousCoverage.getCoveredMethods(testMethod);
+            // 空覆盖可能来自只执行了构造器或静态初始化的测试，无法判断是否受影响
+            if (coveredMethods.isEmpty() || coversChangedClass(coveredMethods, changedClasses)) {
+                affected.add(testMethod);
+            } else {
+                result.addCoverage(testMethod, coveredMethods);
+            }
+        }
+
+        PipelineMetrics.add("tests_reused", testMethods.size() - affected.size());
+        Log.info("Change impact: " + affected.size() + " of " + testMethods.size() + " tests affected");
+        return affected;
+    }
+
+    private static List<String> rerunAll(List<String> testMethods, String reason) {
+        Log.warn("Change impact cannot be narrowed (" + reason + "), running all tests");
+        PipelineMetrics.add("tests_reused", 0);
+        return testMethods;
+    }
+
+    /**
+     * 测试类直接创建或调用了变化类时（如只执行其构造器的测试），覆盖结果中可能没有它的方法。
+     */
+    private boolean referencesChangedClass(Set<String> hierarchy, Set<String> changedClasses) {
+        if (changedClasses.isEmpty()) {
+            return false;
+        }
+        for (String testClass : hierarchy) {
+            if (!Collections.disjoint(current.referencedClasses(testClass), changedClasses)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean coversChangedClass(List<String> coveredMethods, Set<String> changedClasses) {
+        if (changedClasses.isEmpty()) {
+            return false;
+        }
+        for (String method : coveredMethods) {
+            int separator = method.indexOf('#');
+            if (changedClasses.contains(separator >= 0 ? method.substring(0, separator) : method)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void readReport(Path report) throws IOException {
+        ReportMerger.readCoverage(report, previousCoverage::addCoverage);
+        Log.info("Loaded " + previousCoverage.getTestMethods().size() + " tests from previous report: " + report);
+    }
+}
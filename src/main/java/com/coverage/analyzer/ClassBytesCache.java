@@ -0,0 +1,82 @@
+package com.coverage.analyzer;
+
+import org.jacoco.core.internal.data.CRC64;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 生产代码类文件的字节缓存，每次运行只从磁盘读取一次。
+ * 以 JaCoCo 的 class id（类字节的 CRC64）为键，与 ExecutionData 中的 id 一致。
+ */
+public class ClassBytesCache {
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 并行读取目录或 JAR 中的所有类文件。
+     */
+    public static ClassBytesCache load(Path classesDir) throws IOException {
+        ClassBytesCache cache = new ClassBytesCache();
+        if (classesDir == null || !(Files.isDirectory(classesDir) || ClassFileScanner.isJar(classesDir))) {
+            Log.warn("Classes directory not found: " + classesDir);
+            return cache;
+        }
+
+        long start = System.currentTimeMillis();
+        ClassFileScanner.scan(classesDir, (classFile, bytes) -> cache.add(bytes, ClassFileScanner.location(classFile)));
+        long end = System.currentTimeMillis();
+        Log.info("Cached " + cache.size() + " classes from " + classesDir +
+                " in " + (end - start) + "ms");
+        return cache;
+    }
+
+    /**
+     * 依次读取多个目录或 JAR，用于把依赖模块的类一并纳入映射。
+     */
+    public static ClassBytesCache load(List<Path> locations) throws IOException {
+        ClassBytesCache cache = new ClassBytesCache();
+        for (Path location : locations) {
+            cache.entries.putAll(load(location).entries);
+        }
+        return cache;
+    }
+
+    public void add(byte[] bytes, String location) {
+        long id = CRC64.classId(bytes);
+        entries.put(id, new Entry(id, location, bytes));
+    }
+
+    public Entry get(long classId) {
+        return entries.get(classId);
+    }
+
+    public Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public static class Entry {
+        private final long classId;
+        private final String location;
+        private final byte[] bytes;
+
+        Entry(long classId, String location, byte[] bytes) {
+            this.classId = classId;
+            this.location = location;
+            this.bytes = bytes;
+        }
+
+        public long getClassId() { return classId; }
+        public String getLocation() { return location; }
+        public byte[] getBytes() { return bytes; }
+    }
+}
@@ -0,0 +1,119 @@
+package com.coverage.analyzer;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 并行扫描类文件：目录或 JAR（通过 zip 文件系统）中的 .class 文件先列出，
+ * 再由 fork-join 公共池并行整块读取并交给访问者处理。
+ */
+public final class ClassFileScanner {
+    // 超过该大小的类文件使用内存映射读取
+    private static final long MAPPED_READ_THRESHOLD = 1024 * 1024;
+
+    public interface ClassFileVisitor {
+        /**
+         * 可能在多个线程中并发调用。
+         */
+        void visit(Path classFile, byte[] bytes);
+    }
+
+    private ClassFileScanner() {
+    }
+
+    public static boolean isJar(Path location) {
+        String name = location.getFileName() != null ? location.getFileName().toString() : "";
+        return Files.isRegularFile(location) && (name.endsWith(".jar") || name.endsWith(".zip"));
+    }
+
+    /**
+     * 类文件的位置描述：目录中的类为文件路径，JAR 中的类为 jar: URI。
+     */
+    public static String location(Path classFile) {
+        return classFile.getFileSystem() == FileSystems.getDefault() ?
+                classFile.toString() : classFile.toUri().toString();
+    }
+
+    /**
+     * 扫描目录或 JAR 中的所有类文件。
+     *
+     * @return 成功读取的类文件数量
+     */
+    public static int scan(Path location, ClassFileVisitor visitor) throws IOException {
+        if (isJar(location)) {
+            try (FileSystem zip = FileSystems.newFileSystem(location, (ClassLoader) null)) {
+                return scanTree(zip.getPath("/"), visitor);
+            }
+        }
+        return scanTree(location, visitor);
+    }
+
+    private static int scanTree(Path root, ClassFileVisitor visitor) throws IOException {
+        // 遍历时一并取得文件大小，读取时无需再查询
+        List<ClassFile> classFiles = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile() && isClassFile(root.relativize(file))) {
+                    classFiles.add(new ClassFile(file, attributes.size()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        LongAdder count = new LongAdder();
+        classFiles.parallelStream().forEach(classFile -> {
+            try {
+                visitor.visit(classFile.path, read(classFile.path, classFile.size));
+                count.increment();
+            } catch (IOException e) {
+                Log.warn("Error reading class: " + location(classFile.path));
+            }
+        });
+        return count.intValue();
+    }
+
+    private static boolean isClassFile(Path relativePath) {
+        String name = relativePath.getFileName() != null ? relativePath.getFileName().toString() : "";
+        // module-info 和多版本 JAR 中的类不属于生产代码映射范围
+        return name.endsWith(".class") && !"module-info.class".equals(name) &&
+                !relativePath.startsWith("META-INF");
+    }
+
+    /**
+     * 整块读取类文件，较大的文件使用内存映射以避免额外的缓冲区拷贝。
+     */
+    static byte[] read(Path classFile, long size) throws IOException {
+        if (size < MAPPED_READ_THRESHOLD || classFile.getFileSystem() != FileSystems.getDefault()) {
+            return Files.readAllBytes(classFile);
+        }
+        try (FileChannel channel = FileChannel.open(classFile, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            byte[] bytes = new byte[(int) size];
+            mapped.get(bytes);
+            return bytes;
+        }
+    }
+
+    private static class ClassFile {
+        final Path path;
+        final long size;
+
+        ClassFile(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+    }
+}
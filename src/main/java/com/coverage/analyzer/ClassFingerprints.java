@@ -0,0 +1,245 @@
+package com.coverage.analyzer;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.objectweb.asm.ClassReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 生产类和测试类的内容哈希，与覆盖报告一起保存为 coverage_fingerprints.json，
+ * 下次运行时比较哈希即可得到自那次运行以来发生变化的类。
+ * 生产类按二进制类名（含内部类）逐个记录；测试类按外部类名记录，哈希包含其所有内部类，
+ * 同时记录测试类在 test-classes 中的父类，用于把测试基类的变化传递给子类。
+ * 两个目录中的资源文件合并为一个哈希，只能判断"有变化"，无法定位到测试。
+ * 测试类（含内部类）常量池中引用的类只在本次计算时保留，不写入文件：测试类未变化时引用也不变。
+ */
+public class ClassFingerprints {
+    public static final String FILE_NAME = "coverage_fingerprints.json";
+    // 常量池中 CONSTANT_Class 条目的标记
+    private static final int CONSTANT_CLASS = 7;
+
+    private final Map<String, String> classes;
+    private final Map<String, String> testClasses;
+    // 测试类（外部类名） -> 同样位于 test-classes 中的父类（外部类名）
+    private final Map<String, String> testSuperclasses;
+    // 旧版本的指纹文件没有资源哈希，此时为 null
+    private final String resources;
+    // 测试类（外部类名） -> 其字节码直接引用的类，从文件读入的指纹中为空
+    private final Map<String, Set<String>> testReferences;
+
+    private ClassFingerprints(Map<String, String> classes, Map<String, String> testClasses,
+                              Map<String, String> testSuperclasses, String resources,
+                              Map<String, Set<String>> testReferences) {
+        this.classes = classes;
+        this.testClasses = testClasses;
+        this.testSuperclasses = testSuperclasses;
+        this.resources = resources;
+        this.testReferences = testReferences;
+    }
+
+    /**
+     * @param classesDirs 生产代码目录，多模块项目中包括依赖模块的 classes 目录
+     */
+    public static ClassFingerprints compute(List<Path> classesDirs, Path testClassesDir) throws IOException {
+        Map<String, String> classes = new TreeMap<>();
+        String resources = "";
+        for (Path classesDir : classesDirs) {
+            if (!Files.isDirectory(classesDir)) {
+                continue;
+            }
+            for (Path classFile : InstrumentedClassCache.listClassFiles(classesDir)) {
+                classes.put(className(classesDir, classFile),
+                        InstrumentedClassCache.contentHash(classesDir, Collections.singletonList(classFile), ""));
+            }
+            resources = InstrumentedClassCache.contentHash(classesDir,
+                    InstrumentedClassCache.listResourceFiles(classesDir), resources);
+        }
+
+        Map<String, String> testClasses = new TreeMap<>();
+        Map<String, String> testSuperclasses = new TreeMap<>();
+        Map<String, Set<String>> testReferences = new HashMap<>();
+        if (testClassesDir != null && Files.isDirectory(testClassesDir)) {
+            // 内部类（如匿名类、嵌套的测试夹具）的变化归入外部测试类
+            Map<String, List<Path>> groups = new TreeMap<>();
+            Map<String, Path> outerClassFiles = new HashMap<>();
+            for (Path classFile : InstrumentedClassCache.listClassFiles(testClassesDir)) {
+                String name = className(testClassesDir, classFile);
+                String outer = outerClassName(name);
+                groups.computeIfAbsent(outer, key -> new ArrayList<>()).add(classFile);
+                if (outer.equals(name)) {
+                    outerClassFiles.put(name, classFile);
+                }
+            }
+            for (Map.Entry<String, List<Path>> group : groups.entrySet()) {
+                testClasses.put(group.getKey(),
+                        InstrumentedClassCache.contentHash(testClassesDir, group.getValue(), ""));
+                Set<String> references = new HashSet<>();
+                for (Path classFile : group.getValue()) {
+                    addClassReferences(Files.readAllBytes(classFile), references);
+                }
+                testReferences.put(group.getKey(), references);
+            }
+            for (Map.Entry<String, Path> outer : outerClassFiles.entrySet()) {
+                String superName = InstrSupport.classReaderFor(Files.readAllBytes(outer.getValue())).getSuperName();
+                if (superName != null) {
+                    String superclass = outerClassName(superName.replace('/', '.'));
+                    if (groups.containsKey(superclass) && !superclass.equals(outer.getKey())) {
+                        testSuperclasses.put(outer.getKey(), superclass);
+                    }
+                }
+            }
+            resources = InstrumentedClassCache.contentHash(testClassesDir,
+                    InstrumentedClassCache.listResourceFiles(testClassesDir), resources);
+        }
+        return new ClassFingerprints(classes, testClasses, testSuperclasses, resources, testReferences);
+    }
+
+    /**
+     * 收集常量池中的类引用（new、方法调用和字段访问的所属类等），数组类型取其元素类型。
+     */
+    private static void addClassReferences(byte[] classBytes, Set<String> references) {
+        ClassReader reader = InstrSupport.classReaderFor(classBytes);
+        char[] buffer = new char[reader.getMaxStringLength()];
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            // long 和 double 占两个槽位，第二个槽位没有偏移
+            if (offset == 0 || reader.readByte(offset - 1) != CONSTANT_CLASS) {
+                continue;
+            }
+            String name = reader.readUTF8(offset, buffer);
+            int element = name.lastIndexOf('[');
+            if (element >= 0) {
+                if (name.charAt(element + 1) != 'L') {
+                    continue;
+                }
+                name = name.substring(element + 2, name.length() - 1);
+            }
+            references.add(name.replace('/', '.'));
+        }
+    }
+
+    private static String outerClassName(String name) {
+        int inner = name.indexOf('$');
+        return inner >= 0 ? name.substring(0, inner) : name;
+    }
+
+    /**
+     * 读取输出目录中的指纹文件，不存在时返回 null。
+     */
+    public static ClassFingerprints load(Path outputPath) throws IOException {
+        Path file = outputPath.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            JsonObject root = new Gson().fromJson(reader, JsonObject.class);
+            return new ClassFingerprints(toMap(root.getAsJsonObject("classes")),
+                    toMap(root.getAsJsonObject("test_classes")),
+                    toMap(root.getAsJsonObject("test_superclasses")),
+                    root.has("resources") ? root.get("resources").getAsString() : null,
+                    Collections.<String, Set<String>>emptyMap());
+        }
+    }
+
+    public void save(Path outputPath) throws IOException {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        JsonObject root = new JsonObject();
+        root.add("classes", gson.toJsonTree(classes));
+        root.add("test_classes", gson.toJsonTree(testClasses));
+        root.add("test_superclasses", gson.toJsonTree(testSuperclasses));
+        root.addProperty("resources", resources);
+        Files.createDirectories(outputPath);
+        try (Writer writer = Files.newBufferedWriter(outputPath.resolve(FILE_NAME), StandardCharsets.UTF_8)) {
+            gson.toJson(root, writer);
+        }
+    }
+
+    /**
+     * 相对 previous 新增、删除或内容变化的生产类。
+     */
+    public Set<String> changedClasses(ClassFingerprints previous) {
+        return changed(previous.classes, classes);
+    }
+
+    /**
+     * 相对 previous 新增、删除或内容变化的测试类（外部类名）。
+     */
+    public Set<String> changedTestClasses(ClassFingerprints previous) {
+        return changed(previous.testClasses, testClasses);
+    }
+
+    /**
+     * 相对 previous 资源文件是否有变化；previous 没有资源哈希时视为有变化。
+     */
+    public boolean resourcesChanged(ClassFingerprints previous) {
+        return !resources.equals(previous.resources);
+    }
+
+    /**
+     * 测试类及其位于 test-classes 中的各级父类（外部类名），按当前的类文件计算。
+     */
+    public Set<String> testClassHierarchy(String testClass) {
+        Set<String> hierarchy = new LinkedHashSet<>();
+        String current = testClass;
+        while (current != null && hierarchy.add(current)) {
+            current = testSuperclasses.get(current);
+        }
+        return hierarchy;
+    }
+
+    /**
+     * 测试类（外部类名，含其内部类）的字节码直接引用的类，按当前的类文件计算。
+     */
+    public Set<String> referencedClasses(String testClass) {
+        Set<String> references = testReferences.get(testClass);
+        return references != null ? references : Collections.<String>emptySet();
+    }
+
+    private static Set<String> changed(Map<String, String> before, Map<String, String> after) {
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, String> entry : after.entrySet()) {
+            if (!entry.getValue().equals(before.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String name : before.keySet()) {
+            if (!after.containsKey(name)) {
+                changed.add(name);
+            }
+        }
+        return changed;
+    }
+
+    private static String className(Path root, Path classFile) {
+        String relative = root.relativize(classFile).toString().replace('\\', '/');
+        return relative.substring(0, relative.length() - ".class".length()).replace('/', '.');
+    }
+
+    private static Map<String, String> toMap(JsonObject object) {
+        Map<String, String> map = new TreeMap<>();
+        if (object != null) {
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                map.put(entry.getKey(), entry.getValue().getAsString());
+            }
+        }
+        return map;
+    }
+}
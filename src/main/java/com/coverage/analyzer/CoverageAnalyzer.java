@@ -3,21 +3,19 @@ package com.coverage.analyzer;
 import org.jacoco.core.analysis.Analyzer;
 import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataStore;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.Collection;
 
 public class CoverageAnalyzer {
     private final ExecutionDataStore executionDataStore;
-    private final Path classesDir;
+    private final ClassBytesCache classBytesCache;
 
-    public CoverageAnalyzer(ExecutionDataStore executionDataStore, Path classesDir) {
+    public CoverageAnalyzer(ExecutionDataStore executionDataStore, ClassBytesCache classBytesCache) {
         this.executionDataStore = executionDataStore;
-        this.classesDir = classesDir;
+        this.classBytesCache = classBytesCache;
     }
 
     public Collection<IClassCoverage> analyze() throws IOException {
@@ -25,20 +23,21 @@ public class CoverageAnalyzer {
         CoverageBuilder coverageBuilder = new CoverageBuilder();
         Analyzer analyzer = new Analyzer(executionDataStore, coverageBuilder);
 
-        // 添加分析范围
-        if (classesDir != null && Files.exists(classesDir)) {
-            File sourceDir = classesDir.toFile();
-            if (sourceDir.isDirectory()) {
-                System.out.println("Analyzing classes in: " + classesDir);
-                analyzer.analyzeAll(sourceDir);
-            } else {
-                System.out.println("Classes directory is not a directory: " + classesDir);
+        // 只分析本次测试实际执行到的生产代码类，类字节来自缓存
+        for (ExecutionData data : executionDataStore.getContents()) {
+            if (!data.hasHits()) {
+                // 未执行到的类不产生任何覆盖
+                continue;
             }
-        } else {
-            System.out.println("Classes directory not found: " + classesDir);
+            ClassBytesCache.Entry entry = classBytesCache.get(data.getId());
+            if (entry == null) {
+                // 测试类或依赖库中的类，不在分析范围内
+                continue;
+            }
+            analyzer.analyzeClass(entry.getBytes(), entry.getLocation());
         }
 
         // 返回所有分析过的类
         return coverageBuilder.getClasses();
     }
-}
\ No newline at end of file
+}
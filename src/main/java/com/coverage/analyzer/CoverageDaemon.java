@@ -0,0 +1,334 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.CoverageListener;
+import com.coverage.analyzer.models.CoverageResult;
+import com.coverage.analyzer.models.MethodDictionary;
+import com.coverage.analyzer.models.ProjectModel;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 常驻模式：项目模型、方法映射表和最近一次的覆盖结果保留在内存中，
+ * 通过本机回环地址上的 TCP 端口以 JSON 行协议响应请求（一行请求对应一行响应）。
+ * 同一时刻只执行一个请求，JaCoCo 代理的探针数据是进程级共享的。
+ *
+ * <pre>
+ * {"command":"run","tests":["pkg.FooTest#testA"]}   重新运行测试（省略 tests 时运行全部），
+ *                                                    响应中 incomplete 列出没有正常结束的测试
+ * {"command":"covering","method":"pkg.Foo#bar"}      覆盖某方法的测试，省略描述符时匹配所有重载
+ * {"command":"coverage","test":"pkg.FooTest#testA"}  某测试覆盖的方法
+ * {"command":"status"} {"command":"reload"} {"command":"export"} {"command":"shutdown"}
+ * </pre>
+ */
+public class CoverageDaemon {
+    public static final String PORT_FILE_NAME = "coverage_daemon.port";
+
+    private final AnalyzerOptions options;
+    private final Gson gson = new Gson();
+    private final long startTime = System.currentTimeMillis();
+    private ProjectModel model;
+    private CoverageRunner runner;
+    private TestHistory history;
+    private CoverageResult coverageResult = new CoverageResult();
+    // reload 之前记录、之后尚未重新运行的测试，其覆盖来自重新编译前的类
+    private final Set<String> staleTests = new HashSet<>();
+    private ServerSocket serverSocket;
+    private volatile boolean shutdownRequested;
+
+    public CoverageDaemon(AnalyzerOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * 解析项目并构建映射表；reload 时重新创建类加载器以加载重新编译的类，
+     * 旧的运行器（测试线程和类加载器）随之关闭。
+     * 已有的覆盖结果保留但标记为过期，直到对应测试重新运行。
+     */
+    public synchronized void load() throws Exception {
+        if (options.history && history == null) {
+            history = TestHistory.load(options.outputPath);
+        }
+        ProjectModel newModel = new ProjectParser(options.projectPath).parse();
+        CoverageRunner newRunner = Main.createRunner(options, newModel, history);
+        newRunner.prepare();
+
+        staleTests.addAll(coverageResult.getTestMethods());
+        if (runner != null) {
+            runner.close();
+        }
+        model = newModel;
+        runner = newRunner;
+    }
+
+    public synchronized List<String> selectedTests() {
+        List<String> testMethods = runner.findTestMethods();
+        return options.shard != null ? options.shard.select(testMethods) : testMethods;
+    }
+
+    /**
+     * 运行测试并把结果合并到内存中的覆盖结果，返回这些测试的覆盖；没有正常结束的测试
+     * 从内存中的覆盖结果移除，单独列在 incomplete 中。
+     */
+    public synchronized JsonObject run(List<String> testMethods) {
+        CoverageResult latest = new CoverageResult();
+        latest.addListener(new ProgressReporter(testMethods.size()));
+        latest.addListener(new CoverageListener() {
+            @Override
+            public void onCoverage(String testMethod, List<String> coveredMethods) {
+                coverageResult.addCoverage(testMethod, coveredMethods);
+            }
+
+            @Override
+            public void onIncomplete(String testMethod, String reason) {
+                coverageResult.addIncomplete(testMethod, reason);
+            }
+        });
+        runner.collectCoverage(testMethods, latest);
+        staleTests.removeAll(latest.getTestMethods());
+        staleTests.removeAll(latest.getIncompleteTests().keySet());
+
+        JsonObject coverage = new JsonObject();
+        for (String testMethod : latest.getTestMethods()) {
+            coverage.add(testMethod, gson.toJsonTree(latest.getCoveredMethods(testMethod)));
+        }
+        JsonObject response = new JsonObject();
+        response.add("coverage", coverage);
+        response.add("incomplete", gson.toJsonTree(latest.getIncompleteTests()));
+        return response;
+    }
+
+    public synchronized void export() throws IOException {
+        model.getStats().setReportedTestMethods(coverageResult.getTestMethods().size());
+        ResultExporter exporter = new ResultExporter(options.outputPath);
+        exporter.export(model, coverageResult);
+        if (options.binary) {
+            exporter.exportBinary(model, coverageResult);
+        }
+        if (history != null) {
+            history.save(options.outputPath);
+        }
+    }
+
+    /**
+     * 在回环地址上监听，port 为 0 时由系统分配；实际端口写入输出目录的 coverage_daemon.port。
+     */
+    public void serve(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Path portFile = options.outputPath.resolve(PORT_FILE_NAME);
+        Files.createDirectories(options.outputPath);
+        Files.write(portFile, String.valueOf(serverSocket.getLocalPort()).getBytes(StandardCharsets.UTF_8));
+        Log.info("Coverage daemon listening on " + serverSocket.getInetAddress().getHostAddress() + ":" +
+                serverSocket.getLocalPort() + " (port file: " + portFile + ")");
+
+        ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "coverage-daemon-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            while (!serverSocket.isClosed()) {
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketException e) {
+                    // shutdown 请求关闭了监听端口
+                    break;
+                }
+                connections.submit(() -> handleConnection(socket));
+            }
+        } finally {
+            connections.shutdownNow();
+            synchronized (this) {
+                runner.close();
+            }
+            Files.deleteIfExists(portFile);
+            Log.info("Coverage daemon stopped");
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        try (Socket connection = socket;
+             BufferedReader requests = new BufferedReader(
+                     new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter responses = new PrintWriter(
+                     new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = requests.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                responses.println(gson.toJson(handle(line)));
+                responses.flush();
+                if (shutdownRequested) {
+                    serverSocket.close();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            Log.debug("Daemon connection closed: " + e.getMessage());
+        }
+    }
+
+    JsonObject handle(String line) {
+        long start = PipelineMetrics.start();
+        JsonObject response = new JsonObject();
+        String command = "";
+        try {
+            JsonElement parsed = gson.fromJson(line, JsonElement.class);
+            if (parsed == null || !parsed.isJsonObject()) {
+                throw new JsonParseException("not a JSON object");
+            }
+            JsonObject request = parsed.getAsJsonObject();
+            command = stringField(request, "command");
+            switch (command) {
+                case "run":
+                    List<String> tests = request.has("tests") ? stringListField(request, "tests") : selectedTests();
+                    JsonObject runResult = run(tests);
+                    response.add("coverage", runResult.get("coverage"));
+                    response.add("incomplete", runResult.get("incomplete"));
+                    break;
+                case "covering":
+                    response.add("tests", gson.toJsonTree(testsCovering(stringField(request, "method"))));
+                    break;
+                case "coverage":
+                    String test = stringField(request, "test");
+                    response.add("methods", gson.toJsonTree(coveredMethods(test)));
+                    response.addProperty("stale", isStale(test));
+                    break;
+                case "status":
+                    response.add("status", status());
+                    break;
+                case "reload":
+                    load();
+                    response.add("status", status());
+                    break;
+                case "export":
+                    export();
+                    break;
+                case "shutdown":
+                    // 响应写出后再关闭监听端口
+                    shutdownRequested = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown command: " + command);
+            }
+            response.addProperty("ok", true);
+        } catch (JsonParseException e) {
+            response.addProperty("ok", false);
+            response.addProperty("error", "Malformed request: " + line);
+        } catch (IllegalArgumentException e) {
+            response.addProperty("ok", false);
+            response.addProperty("error", e.getMessage());
+        } catch (Exception e) {
+            Log.warn("Daemon request failed: " + line, e);
+            response.addProperty("ok", false);
+            response.addProperty("error", e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+        PipelineMetrics.stop("daemon_" + (command.isEmpty() ? "invalid" : command), start);
+        return response;
+    }
+
+    /**
+     * 覆盖指定方法的测试。方法标识不含描述符时匹配该方法的所有重载。
+     */
+    public synchronized List<String> testsCovering(String method) {
+        MethodDictionary dictionary = coverageResult.getMethodDictionary();
+        RoaringBitmap methodIds = new RoaringBitmap();
+        if (method.contains("(")) {
+            Integer id = dictionary.findId(method);
+            if (id != null) {
+                methodIds.add(id);
+            }
+        } else {
+            String prefix = method + "(";
+            for (int id = 0; id < dictionary.size(); id++) {
+                if (dictionary.methodOf(id).startsWith(prefix)) {
+                    methodIds.add(id);
+                }
+            }
+        }
+
+        List<String> tests = new ArrayList<>();
+        if (methodIds.isEmpty()) {
+            return tests;
+        }
+        for (String testMethod : coverageResult.getTestMethods()) {
+            if (RoaringBitmap.intersects(coverageResult.getCoveredMethodIds(testMethod), methodIds)) {
+                tests.add(testMethod);
+            }
+        }
+        return tests;
+    }
+
+    public synchronized List<String> coveredMethods(String testMethod) {
+        if (!coverageResult.getTestMethods().contains(testMethod)) {
+            throw new IllegalArgumentException("No coverage recorded for test: " + testMethod);
+        }
+        return coverageResult.getCoveredMethods(testMethod);
+    }
+
+    private synchronized boolean isStale(String testMethod) {
+        return staleTests.contains(testMethod);
+    }
+
+    private synchronized JsonObject status() {
+        JsonObject status = new JsonObject();
+        status.addProperty("project", options.projectPath.toString());
+        status.addProperty("tests", model.getTestMethods().size());
+        status.addProperty("covered_tests", coverageResult.getTestMethods().size());
+        // 覆盖来自 reload 之前的类、尚未重新运行的测试数
+        status.addProperty("stale_tests", staleTests.size());
+        status.addProperty("methods", coverageResult.getMethodDictionary().size());
+        status.addProperty("uptime_seconds", (System.currentTimeMillis() - startTime) / 1000);
+        return status;
+    }
+
+    private static String stringField(JsonObject request, String name) {
+        JsonElement value = request.get(name);
+        if (!isString(value)) {
+            throw new IllegalArgumentException("Missing or non-string field \"" + name + "\"");
+        }
+        return value.getAsString();
+    }
+
+    private static List<String> stringListField(JsonObject request, String name) {
+        JsonElement value = request.get(name);
+        if (value == null || !value.isJsonArray()) {
+            throw new IllegalArgumentException("Field \"" + name + "\" must be an array of strings");
+        }
+        List<String> values = new ArrayList<>();
+        for (JsonElement element : value.getAsJsonArray()) {
+            if (!isString(element)) {
+                throw new IllegalArgumentException("Field \"" + name + "\" must be an array of strings");
+            }
+            values.add(element.getAsString());
+        }
+        return values;
+    }
+
+    private static boolean isString(JsonElement value) {
+        return value != null && value.isJsonPrimitive() && value.getAsJsonPrimitive().isString();
+    }
+}
@@ -0,0 +1,234 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.CoverageListener;
+import com.coverage.analyzer.models.CoverageResult;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 已完成测试的追加式日志 coverage_journal.jsonl，每个测试完成后立即写入一行：
+ * {"test": ..., "key": ..., "methods": [...]}。
+ * key 由测试类（含内部类）字节、整个生产代码 classes 目录和整个 test-classes 目录
+ * （含资源文件）的内容哈希组成，重新运行时 key 仍然一致的测试直接复用日志中的结果，只运行其余测试。
+ * 测试基类、工具类或测试资源的任何变化都会使全部条目失效。
+ * 只记录正常结束的测试（超时、工作进程故障等没有覆盖数据的测试不写入），续跑时会重新运行。
+ * 续跑时日志被压缩为每个测试一条仍然有效的记录，失效和重复的记录不会一直累积。
+ */
+public class CoverageJournal implements CoverageListener, Closeable {
+    public static final String FILE_NAME = "coverage_journal.jsonl";
+
+    private final Gson gson = new Gson();
+    private final Path testClassesDir;
+    // 生产代码目录和 test-classes 目录的内容哈希
+    private final String directoriesHash;
+    private final Map<String, String> classKeys = new HashMap<>();
+    private final Map<String, JsonObject> entries = new LinkedHashMap<>();
+    private final Path journalFile;
+    private Writer writer;
+
+    public CoverageJournal(Path journalFile, List<Path> classesDirs, Path testClassesDir) throws IOException {
+        this.testClassesDir = testClassesDir;
+        // 多个生产代码目录（含依赖模块）依次链入哈希
+        String hash = "";
+        for (Path classesDir : classesDirs) {
+            if (Files.isDirectory(classesDir)) {
+                hash = InstrumentedClassCache.contentHash(classesDir, InstrumentedClassCache.listClassFiles(classesDir), hash);
+            }
+        }
+        // 测试基类、工具类和资源文件的变化无法归属到具体测试类，整个目录参与哈希
+        if (testClassesDir != null && Files.isDirectory(testClassesDir)) {
+            hash = InstrumentedClassCache.contentHash(testClassesDir, InstrumentedClassCache.listClassFiles(testClassesDir), hash);
+            hash = InstrumentedClassCache.contentHash(testClassesDir, InstrumentedClassCache.listResourceFiles(testClassesDir), hash);
+        }
+        this.directoriesHash = hash;
+        this.journalFile = journalFile;
+
+        Files.createDirectories(journalFile.toAbsolutePath().getParent());
+        if (Files.exists(journalFile)) {
+            truncateIncompleteLine(journalFile);
+            load(journalFile);
+        }
+    }
+
+    /**
+     * 进程被杀死时最后一行可能只写了一半，截断到最后一个换行符，保证后续追加的行完整。
+     */
+    private static void truncateIncompleteLine(Path journalFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long position = channel.size();
+            ByteBuffer single = ByteBuffer.allocate(1);
+            while (position > 0) {
+                single.clear();
+                channel.read(single, position - 1);
+                if (single.get(0) == '\n') {
+                    break;
+                }
+                position--;
+            }
+            if (position < channel.size()) {
+                channel.truncate(position);
+            }
+        }
+    }
+
+    private void load(Path journalFile) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    JsonObject entry = gson.fromJson(line, JsonObject.class);
+                    if (entry != null && entry.has("test") && entry.has("key") && entry.has("methods")) {
+                        // 同一测试的多条记录以最后一条为准
+                        String testMethod = entry.get("test").getAsString();
+                        entries.remove(testMethod);
+                        entries.put(testMethod, entry);
+                    }
+                } catch (JsonParseException e) {
+                    Log.warn("Skipping corrupt journal line: " + line);
+                }
+            }
+        }
+        Log.info("Loaded " + entries.size() + " journal entries from " + journalFile);
+    }
+
+    /**
+     * 把仍然有效的日志结果加入 result，返回需要重新运行的测试；之后完成的测试由本对象追加到日志。
+     * 日志先压缩为仍然有效的记录（包括不在本次测试列表中的测试），再打开追加。
+     */
+    public List<String> resume(List<String> testMethods, CoverageResult result) throws IOException {
+        Map<String, JsonObject> valid = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonObject> entry : entries.entrySet()) {
+            if (isValid(entry.getKey(), entry.getValue())) {
+                valid.put(entry.getKey(), entry.getValue());
+            }
+        }
+        int dropped = entries.size() - valid.size();
+        entries.clear();
+
+        List<String> remaining = new ArrayList<>();
+        int reused = 0;
+        for (String testMethod : testMethods) {
+            JsonObject entry = valid.get(testMethod);
+            if (entry != null) {
+                result.addCoverage(testMethod, Arrays.asList(gson.fromJson(entry.get("methods"), String[].class)));
+                reused++;
+            } else {
+                remaining.add(testMethod);
+            }
+        }
+        compact(valid.values());
+        writer = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        result.addListener(this);
+        if (dropped > 0) {
+            Log.info("Dropped " + dropped + " outdated journal entries");
+        }
+
+        PipelineMetrics.add("tests_resumed", reused);
+        Log.info("Resumed " + reused + " tests from journal, " + remaining.size() + " left to run");
+        return remaining;
+    }
+
+    private boolean isValid(String testMethod, JsonObject entry) throws IOException {
+        // 早期版本把超时和失败的测试记为空覆盖，没有 completed 标记的空记录不复用
+        if (!entry.has("completed") && entry.getAsJsonArray("methods").size() == 0) {
+            return false;
+        }
+        return entry.get("key").getAsString().equals(keyOf(testMethod));
+    }
+
+    /**
+     * 把有效记录写入临时文件后替换日志，中途被终止时原日志保持不变。
+     */
+    private void compact(Collection<JsonObject> validEntries) throws IOException {
+        Path compacted = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            for (JsonObject entry : validEntries) {
+                out.write(gson.toJson(entry));
+                out.write('\n');
+            }
+        }
+        Files.move(compacted, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public synchronized void onCoverage(String testMethod, List<String> coveredMethods) {
+        try {
+            JsonObject entry = new JsonObject();
+            entry.addProperty("test", testMethod);
+            entry.addProperty("key", keyOf(testMethod));
+            entry.add("methods", gson.toJsonTree(coveredMethods));
+            entry.addProperty("completed", true);
+            writer.write(gson.toJson(entry));
+            writer.write('\n');
+            writer.flush();
+        } catch (IOException e) {
+            Log.warn("Failed to write journal entry for " + testMethod + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 测试的有效性标识：测试类及其内部类的字节 + 生产代码目录和 test-classes 目录的哈希。
+     */
+    private synchronized String keyOf(String testMethod) throws IOException {
+        String className = testMethod.split("#")[0];
+        String key = classKeys.get(className);
+        if (key == null) {
+            key = InstrumentedClassCache.contentHash(testClassesDir, testClassFiles(className), directoriesHash);
+            classKeys.put(className, key);
+        }
+        return key;
+    }
+
+    private List<Path> testClassFiles(String className) throws IOException {
+        List<Path> classFiles = new ArrayList<>();
+        if (testClassesDir == null) {
+            return classFiles;
+        }
+        Path classFile = testClassesDir.resolve(className.replace('.', '/') + ".class");
+        Path directory = classFile.getParent();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return classFiles;
+        }
+        String simpleName = classFile.getFileName().toString();
+        String innerPrefix = simpleName.substring(0, simpleName.length() - ".class".length()) + "$";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.equals(simpleName) || (name.startsWith(innerPrefix) && name.endsWith(".class"))) {
+                    classFiles.add(file);
+                }
+            }
+        }
+        classFiles.sort(null);
+        return classFiles;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.coverage.analyzer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 通过倒排索引查询覆盖指定方法的测试，每行输出一个测试；指定多个方法时输出去重后的并集。
+ */
+public class CoverageQuery {
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java -cp coverage-analyzer.jar com.coverage.analyzer.CoverageQuery <coverage_index.bin | output-path> <method>...");
+            System.exit(1);
+        }
+
+        Path indexFile = Paths.get(args[0]);
+        if (Files.isDirectory(indexFile)) {
+            indexFile = indexFile.resolve(ReverseCoverageIndex.FILE_NAME);
+        }
+
+        try {
+            ReverseCoverageIndex index = ReverseCoverageIndex.open(indexFile);
+            Set<String> tests = new LinkedHashSet<>();
+            for (int i = 1; i < args.length; i++) {
+                tests.addAll(index.findTests(args[i]));
+            }
+            for (String test : tests) {
+                System.out.println(test);
+            }
+        } catch (Exception e) {
+            Log.error("Error querying coverage index: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -1,34 +1,67 @@
 package com.coverage.analyzer;
 
 import com.coverage.analyzer.models.CoverageResult;
+import com.coverage.analyzer.models.ProjectModel;
 import org.jacoco.agent.rt.IAgent;
-import org.jacoco.core.analysis.IClassCoverage;
-import org.jacoco.core.analysis.ICounter;
-import org.jacoco.core.analysis.ILine;
-import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.junit.runner.Description;
 import org.junit.runner.JUnitCore;
 import org.junit.runner.Request;
 import org.junit.runner.Result;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
 
-public class CoverageRunner {
+public class CoverageRunner implements Closeable {
     private final Path projectPath;
     private final Path rulesetPath;
-    private final ClassLoader projectClassLoader;
+    private ClassLoader projectClassLoader;
+    private ProjectModel projectModel;
+    private MethodCoverageMapper mapper;
+    private ExecutorService testExecutor;
     private int testTimeout = 30;
+    private boolean batchByClass;
+    private boolean junitPlatform;
+    private boolean offlineInstrumentation;
+    // 多模块项目中依赖模块的 classes 目录
+    private List<Path> moduleClasspath = new ArrayList<>();
+    // 作为多模块项目中的单个模块运行：只使用构建输出目录
+    private boolean moduleRun;
+    // 上一次 runTest 没有正常结束的原因，子进程据此在响应中报告 incomplete
+    private volatile String lastTestIncomplete;
+    // 行/分支粒度模式：保留类字节供 JaCoCo Analyzer 使用，按测试累积执行数据直到被取走
+    private boolean lineGranularity;
+    private ClassBytesCache lineClassBytes;
+    private final Map<String, ExecutionDataStore> lineExecutionData = new ConcurrentHashMap<>();
+    // 测试耗时历史：记录本次耗时，并据此收紧单个测试的超时
+    private TestHistory history;
+    public CoverageRunner(Path projectPath, Path rulesetPath, ProjectModel projectModel) throws Exception {
+        this(projectPath, rulesetPath);
+        this.projectModel = projectModel;
+    }
+
     public CoverageRunner(Path projectPath, Path rulesetPath) throws Exception {
         this.projectPath = projectPath.toAbsolutePath().normalize();
-        System.out.println("Normalized project path: " + this.projectPath);
+        Log.debug("Normalized project path: " + this.projectPath);
 
         if (!Files.exists(this.projectPath)) {
             throw new IOException("Project directory not found: " + this.projectPath);
@@ -38,36 +71,67 @@ public class CoverageRunner {
         }
 
         this.rulesetPath = rulesetPath;
-        this.projectClassLoader = createProjectClassLoader();
     }
 
-    private ClassLoader createProjectClassLoader() throws Exception {
+    /**
+     * 创建项目类加载器，整个运行期间只创建一次；离线插桩和依赖模块等设置需在此之前完成。
+     */
+    public synchronized void prepareClassLoader() {
+        if (projectClassLoader != null) {
+            return;
+        }
+        long start = PipelineMetrics.start();
+        try {
+            projectClassLoader = createProjectClassLoader();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create project class loader", e);
+        }
+        PipelineMetrics.stop("classloader", start);
+    }
+
+    private ClassLoader createProjectClassLoader() throws IOException {
         List<URL> urls = new ArrayList<>();
 
         // 添加主类目录
         Path classesDir = findClassesDirectory();
         if (classesDir != null && Files.exists(classesDir)) {
-            System.out.println("Adding classes directory: " + classesDir);
+            Log.debug("Adding classes directory: " + classesDir);
             urls.add(classesDir.toUri().toURL());
         }
 
         // 添加测试类目录
         Path testClassesDir = findTestClassesDirectory();
         if (testClassesDir != null && Files.exists(testClassesDir)) {
-            System.out.println("Adding test-classes directory: " + testClassesDir);
+            Log.debug("Adding test-classes directory: " + testClassesDir);
             urls.add(testClassesDir.toUri().toURL());
         }
 
+        // 添加依赖模块的类目录
+        for (Path moduleClasses : moduleClasspath) {
+            Log.debug("Adding module classes: " + moduleClasses);
+            urls.add(moduleClasses.toUri().toURL());
+        }
+
         // 添加依赖库
         for (Path jarPath : findDependencies()) {
-            System.out.println("Adding dependency: " + jarPath);
+            Log.debug("Adding dependency: " + jarPath);
             urls.add(jarPath.toUri().toURL());
         }
 
         // 打印所有类路径
-        System.out.println("Classpath URLs (" + urls.size() + " items):");
-        for (URL url : urls) {
-            System.out.println("  " + url);
+        Log.info("Project classpath: " + urls.size() + " entries");
+        if (Log.isDebugEnabled()) {
+            for (URL url : urls) {
+                Log.debug("  " + url);
+            }
+        }
+
+        // 离线插桩模式：生产代码类从插桩缓存加载，代理不再即时插桩
+        if (offlineInstrumentation && classesDir != null && Files.exists(classesDir)) {
+            Path instrumentedDir = InstrumentedClassCache.prepare(classesDir,
+                    InstrumentedClassCache.defaultRoot(classesDir));
+            return new InstrumentedClassLoader(instrumentedDir, urls.toArray(new URL[0]),
+                    ClassLoader.getSystemClassLoader());
         }
 
         // 使用系统类加载器作为父加载器
@@ -105,282 +169,679 @@ public class CoverageRunner {
     }
 
     private Path findClassesDirectory() {
+        return classesDirectoryOf(projectPath, !moduleRun);
+    }
+
+    /**
+     * @param allowProjectRoot 找不到构建输出目录时是否把项目目录本身当作 classes 目录（类文件与源码放在一起的项目）；
+     *                         模块运行中不允许，否则未编译模块的整个目录（含 test-classes）都会被当作生产代码
+     */
+    static Path classesDirectoryOf(Path projectPath, boolean allowProjectRoot) {
         // 尝试常见构建系统的输出目录
-        Path[] possiblePaths = {
+        List<Path> possiblePaths = new ArrayList<>(Arrays.asList(
                 projectPath.resolve("target").resolve("classes"),
                 projectPath.resolve("build").resolve("classes").resolve("java").resolve("main"),
                 projectPath.resolve("out").resolve("production").resolve("classes"),
-                projectPath.resolve("bin"),
-                projectPath
-        };
+                projectPath.resolve("bin")));
+        if (allowProjectRoot) {
+            possiblePaths.add(projectPath);
+        }
 
         for (Path path : possiblePaths) {
             if (Files.exists(path) && Files.isDirectory(path)) {
-                System.out.println("Found classes directory: " + path);
+                Log.debug("Found classes directory: " + path);
                 return path;
             }
         }
-        System.out.println("No classes directory found");
+        Log.warn("No classes directory found");
         return null;
     }
 
     private Path findTestClassesDirectory() {
-        Path[] possiblePaths = {
+        List<Path> possiblePaths = new ArrayList<>(Arrays.asList(
                 projectPath.resolve("target").resolve("test-classes"),
                 projectPath.resolve("build").resolve("classes").resolve("java").resolve("test"),
                 projectPath.resolve("out").resolve("test").resolve("classes"),
-                projectPath.resolve("test-bin"),
-                projectPath
-        };
+                projectPath.resolve("test-bin")));
+        if (!moduleRun) {
+            possiblePaths.add(projectPath);
+        }
 
         for (Path path : possiblePaths) {
             if (Files.exists(path) && Files.isDirectory(path)) {
-                System.out.println("Found test-classes directory: " + path);
+                Log.debug("Found test-classes directory: " + path);
                 return path;
             }
         }
-        System.out.println("No test-classes directory found");
+        Log.warn("No test-classes directory found");
         return null;
     }
 
+    public List<String> findTestMethods() {
+        // 优先复用调用方已解析的项目模型，避免重复解析源码树
+        if (projectModel == null) {
+            try {
+                projectModel = new ProjectParser(projectPath).parse();
+            } catch (Exception e) {
+                Log.error("Failed to parse project: " + e.getMessage(), e);
+                return new ArrayList<>();
+            }
+        }
+        List<String> testMethods = projectModel.getTestMethods();
+        Log.info("Found " + testMethods.size() + " test methods to run");
+        return testMethods;
+    }
+
+    /**
+     * 打开断点续跑日志，日志条目以测试类字节和生产代码目录的内容作为有效性标识。
+     */
+    public CoverageJournal openJournal(Path journalFile) throws IOException {
+        return new CoverageJournal(journalFile, productionClassDirectories(), findTestClassesDirectory());
+    }
+
+    /**
+     * 当前生产类和测试类的内容哈希，用于变更影响测试选择。
+     */
+    public ClassFingerprints fingerprints() throws IOException {
+        return ClassFingerprints.compute(productionClassDirectories(), findTestClassesDirectory());
+    }
+
+    /**
+     * 需要映射覆盖的生产代码目录：本模块的 classes 目录和依赖模块的 classes 目录。
+     */
+    private List<Path> productionClassDirectories() {
+        List<Path> directories = new ArrayList<>();
+        Path classesDir = findClassesDirectory();
+        if (classesDir != null) {
+            directories.add(classesDir);
+        }
+        directories.addAll(moduleClasspath);
+        return directories;
+    }
+
     public CoverageResult collectCoverage() {
-        CoverageResult result = new CoverageResult();
-        ProjectParser parser = new ProjectParser(projectPath);
+        return collectCoverage(findTestMethods());
+    }
+
+    public CoverageResult collectCoverage(List<String> testMethods) {
+        return collectCoverage(testMethods, new CoverageResult());
+    }
+
+    public CoverageResult collectCoverage(List<String> testMethods, CoverageResult result) {
+        if (junitPlatform) {
+            return collectCoverageWithPlatform(testMethods, result);
+        }
+        if (batchByClass) {
+            return collectCoverageByClass(testMethods, result);
+        }
+        for (String testMethod : testMethods) {
+            List<String> coveredMethods = runTest(testMethod);
+            if (lastTestIncomplete != null) {
+                result.addIncomplete(testMethod, lastTestIncomplete);
+            } else {
+                result.addCoverage(testMethod, coveredMethods);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按测试类批量运行：每个类只启动一次 JUnit，@BeforeClass 等类级初始化只执行一次，
+     * 通过 RunListener 在每个测试方法边界重置并采集覆盖率。
+     */
+    private CoverageResult collectCoverageByClass(List<String> testMethods, CoverageResult result) {
+        Map<String, List<String>> methodsByClass = groupByClass(testMethods);
+        for (Map.Entry<String, List<String>> entry : methodsByClass.entrySet()) {
+            Map<String, List<String>> classCoverage = new ConcurrentHashMap<>();
+            boolean completed = runTestClass(entry.getKey(), entry.getValue(), classCoverage);
+            addClassResults(entry.getKey(), entry.getValue(), classCoverage, completed, result);
+        }
+        return result;
+    }
+
+    /**
+     * 通过 JUnit Platform Launcher 按测试类执行选中的测试，支持 Jupiter 的参数化测试、
+     * 重复测试和动态测试，JUnit 4 测试由 vintage 引擎执行。与 JUnit 4 批量运行一样，
+     * 每个类单独计算超时，一个类卡住只影响这个类的测试。
+     */
+    private CoverageResult collectCoverageWithPlatform(List<String> testMethods, CoverageResult result) {
+        prepare();
+        Map<String, List<String>> methodsByClass = groupByClass(testMethods);
+        Log.info("Running " + testMethods.size() + " tests in " + methodsByClass.size() +
+                " classes on the JUnit Platform");
+        for (Map.Entry<String, List<String>> entry : methodsByClass.entrySet()) {
+            String className = entry.getKey();
+            Map<String, List<String>> classCoverage = new ConcurrentHashMap<>();
+            TestHistory.Recorder durations = new TestHistory.Recorder();
+            // 每个类使用新的执行器，取消只作用于超时的这一次运行
+            JUnitPlatformExecutor executor = new JUnitPlatformExecutor(projectClassLoader,
+                    this::attributeCoverage);
+            Map<String, List<String>> selected = Collections.singletonMap(className, entry.getValue());
+            Future<?> future = testExecutor().submit(() -> {
+                ClassLoader originalLoader = Thread.currentThread().getContextClassLoader();
+                try {
+                    Thread.currentThread().setContextClassLoader(projectClassLoader);
+                    executor.execute(selected, classCoverage, durations);
+                } finally {
+                    Thread.currentThread().setContextClassLoader(originalLoader);
+                }
+            });
+            long start = PipelineMetrics.start();
+            boolean completed = awaitTestRun(future, timeoutFor(classTests(className, entry.getValue())),
+                    "Test class " + className);
+            PipelineMetrics.stop("platform_run", start);
+            if (!completed) {
+                executor.cancel();
+            }
+            if (history != null) {
+                durations.commitTo(history, !completed);
+            }
+            addClassResults(className, entry.getValue(), classCoverage, completed, result);
+        }
+        return result;
+    }
+
+    /**
+     * 写出一个测试类的结果。没有覆盖数据的测试（类加载失败、被过滤、运行超时被放弃）
+     * 记为没有正常结束，而不是覆盖为空。
+     */
+    private static void addClassResults(String className, List<String> methodNames,
+                                        Map<String, List<String>> classCoverage, boolean completed,
+                                        CoverageResult result) {
+        for (String methodName : methodNames) {
+            String testMethod = className + "#" + methodName;
+            List<String> coveredMethods = classCoverage.get(testMethod);
+            if (coveredMethods != null) {
+                result.addCoverage(testMethod, coveredMethods);
+            } else {
+                result.addIncomplete(testMethod, completed ? CoverageResult.NOT_RUN : CoverageResult.TIMED_OUT);
+            }
+        }
+    }
+
+    private static List<String> classTests(String className, List<String> methodNames) {
+        List<String> testMethods = new ArrayList<>();
+        for (String methodName : methodNames) {
+            testMethods.add(className + "#" + methodName);
+        }
+        return testMethods;
+    }
+
+    private static Map<String, List<String>> groupByClass(List<String> testMethods) {
+        Map<String, List<String>> methodsByClass = new LinkedHashMap<>();
+        for (String testMethod : testMethods) {
+            String[] parts = testMethod.split("#");
+            methodsByClass.computeIfAbsent(parts[0], k -> new ArrayList<>()).add(parts[1]);
+        }
+        return methodsByClass;
+    }
+
+    /**
+     * 单个测试的超时，有历史记录时按历史耗时收紧。
+     */
+    private int timeoutFor(String testMethod) {
+        return history != null ? history.timeoutSeconds(testMethod, testTimeout) : testTimeout;
+    }
+
+    /**
+     * 批量运行的超时按其中各测试的超时累计。
+     */
+    private long timeoutFor(List<String> testMethods) {
+        long total = 0;
+        for (String testMethod : testMethods) {
+            total += timeoutFor(testMethod);
+        }
+        return total;
+    }
+
+    /**
+     * 等待一次批量测试运行结束，超时后放弃当前测试线程；超时返回 false。
+     */
+    private boolean awaitTestRun(Future<?> future, long timeoutSeconds, String description) {
         try {
-            parser.parse();
-        } catch (Exception e) {
-            e.printStackTrace();
+            future.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            abandonTestExecutor();
+            // 批量运行（一个测试类或一次 JUnit Platform 运行）超时，与单个测试的 tests_timed_out 分开计数
+            PipelineMetrics.increment("test_batches_timed_out");
+            Log.warn(description + " timed out after " + timeoutSeconds + " seconds");
+            return false;
+        } catch (ExecutionException e) {
+            Log.warn(description + " failed: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return true;
+    }
+
+    /**
+     * 在一次 JUnit 运行中执行测试类中选中的方法，每个测试方法覆盖的方法列表写入 coverage；
+     * 运行超时被放弃时返回 false，此前完成的测试结果仍然可用。
+     */
+    private boolean runTestClass(String className, List<String> methodNames, Map<String, List<String>> coverage) {
+        prepare();
+        Log.debug("Running test class: " + className + " (" + methodNames.size() + " tests)");
+
+        PerTestCoverageListener listener = new PerTestCoverageListener(coverage);
+        Set<String> selected = new HashSet<>(methodNames);
+        Future<?> future = testExecutor().submit(() -> {
+            ClassLoader originalLoader = Thread.currentThread().getContextClassLoader();
+            try {
+                Thread.currentThread().setContextClassLoader(projectClassLoader);
+                Class<?> testClass = Class.forName(className, true, projectClassLoader);
+
+                Request request = Request.aClass(testClass).filterWith(new Filter() {
+                    @Override
+                    public boolean shouldRun(Description description) {
+                        if (description.isTest()) {
+                            return selected.contains(baseMethodName(description.getMethodName()));
+                        }
+                        for (Description child : description.getChildren()) {
+                            if (shouldRun(child)) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    }
+
+                    @Override
+                    public String describe() {
+                        return "methods " + selected;
+                    }
+                });
+
+                JUnitCore core = new JUnitCore();
+                core.addListener(listener);
+                Result result = core.run(request);
+
+                if (Log.isDebugEnabled()) {
+                    Log.debug("Test class completed: " + className + " (" + result.getRunCount() + " run, " +
+                            result.getFailureCount() + " failed, " + result.getRunTime() + "ms)");
+                }
+            } catch (ClassNotFoundException e) {
+                Log.warn("Test class not found: " + className);
+            } finally {
+                Thread.currentThread().setContextClassLoader(originalLoader);
+            }
+        });
+
+        // 整个类的超时按各测试的超时累计
+        long start = PipelineMetrics.start();
+        boolean completed = awaitTestRun(future, timeoutFor(classTests(className, methodNames)),
+                "Test class " + className);
+        PipelineMetrics.stop("test_class_run", start);
+        if (!completed) {
+            listener.cancelled = true;
         }
-        List<String> testMethods = parser.getTestMethods();
+        if (history != null) {
+            listener.durations.commitTo(history, !completed);
+        }
+        return completed;
+    }
 
-        int maxTests = 500;
-        if (testMethods.size() > maxTests) {
-            testMethods = testMethods.subList(0, maxTests);
+    /**
+     * JUnit 4 参数化测试的方法名形如 test[0]，去掉参数部分得到源码中的方法名。
+     */
+    private static String baseMethodName(String methodName) {
+        if (methodName == null) {
+            return "";
         }
+        int bracket = methodName.indexOf('[');
+        return bracket >= 0 ? methodName.substring(0, bracket) : methodName;
+    }
 
-        System.out.println("Found " + testMethods.size() + " test methods to run");
+    private class PerTestCoverageListener extends RunListener {
+        final Map<String, List<String>> coverage;
+        final TestHistory.Recorder durations = new TestHistory.Recorder();
+        // 类运行超时被放弃后置位，被放弃的 JUnit 线程不再重置或读取代理数据
+        volatile boolean cancelled;
+
+        PerTestCoverageListener(Map<String, List<String>> coverage) {
+            this.coverage = coverage;
+        }
+
+        @Override
+        public void testStarted(Description description) {
+            if (cancelled) {
+                return;
+            }
+            JacocoAgentLoader.reset();
+            durations.started(description.getClassName() + "#" + baseMethodName(description.getMethodName()));
+        }
+
+        @Override
+        public void testFailure(Failure failure) {
+            if (cancelled) {
+                return;
+            }
+            PipelineMetrics.increment("tests_failed");
+        }
+
+        @Override
+        public void testFinished(Description description) {
+            if (cancelled) {
+                return;
+            }
+            PipelineMetrics.increment("tests_run");
+            String testMethod = description.getClassName() + "#" + baseMethodName(description.getMethodName());
+            durations.finished(testMethod);
+            List<String> coveredMethods = attributeCoverage(testMethod, JacocoAgentLoader.getExecutionData());
+            if (Log.isDebugEnabled()) {
+                Log.debug("  " + description.getMethodName() + ": covered " + coveredMethods.size() + " methods");
+            }
+
+            // 参数化测试的多次调用合并为同一个测试方法的覆盖
+            coverage.merge(testMethod, coveredMethods, (previous, current) -> {
+                Set<String> merged = new LinkedHashSet<>(previous);
+                merged.addAll(current);
+                return new ArrayList<>(merged);
+            });
+        }
+    }
+
+    /**
+     * 准备方法映射表，整个运行期间只构建一次。
+     */
+    public synchronized void prepare() {
+        prepareClassLoader();
+        if (mapper != null) {
+            return;
+        }
 
         // 检查Jacoco代理状态
         IAgent agent = JacocoAgentLoader.getAgent();
-        System.out.println("Jacoco agent status: " + (agent != null ? "Loaded" : "Not loaded"));
-        System.out.println("Jacoco agent version: " + (agent != null ? agent.getVersion() : "N/A"));
+        Log.debug("Jacoco agent status: " + (agent != null ? "Loaded" : "Not loaded"));
+        Log.debug("Jacoco agent version: " + (agent != null ? agent.getVersion() : "N/A"));
 
         // 创建方法映射器
-        MethodCoverageMapper mapper = new MethodCoverageMapper();
-        Path classesDir = findClassesDirectory();
-        if (classesDir != null) {
+        mapper = new MethodCoverageMapper();
+        List<Path> classesDirs = productionClassDirectories();
+        if (!classesDirs.isEmpty()) {
+            long start = PipelineMetrics.start();
             try {
-                mapper.mapProjectClasses(classesDir);
-                System.out.println("Mapped " + mapper.lineToMethodMap.size() + " classes for coverage analysis");
-
-                // 打印映射示例用于调试
-                if (!mapper.lineToMethodMap.isEmpty()) {
-                    String sampleClass = mapper.lineToMethodMap.keySet().iterator().next();
-                    System.out.println("Sample mappings for class: " + sampleClass);
-                    Map<Integer, String> sampleMappings = mapper.lineToMethodMap.get(sampleClass);
-                    int count = 0;
-                    for (Map.Entry<Integer, String> entry : sampleMappings.entrySet()) {
-                        System.out.println("  Line " + entry.getKey() + " -> " + entry.getValue());
-                        if (++count > 10) break;
-                    }
+                // 生产代码类字节只读取一次，所有测试共享
+                ClassBytesCache classBytesCache = ClassBytesCache.load(classesDirs);
+                mapper.mapProbeTables(classBytesCache);
+                if (lineGranularity) {
+                    lineClassBytes = classBytesCache;
                 }
+                Log.info("Mapped " + mapper.probeTables.size() + " classes for coverage analysis");
+                PipelineMetrics.stop("mapping", start);
+                PipelineMetrics.add("classes_mapped", mapper.probeTables.size());
             } catch (IOException e) {
-                System.err.println("Failed to map classes: " + e.getMessage());
+                Log.error("Failed to map classes: " + e.getMessage());
             }
         }
-        for (String testMethod : testMethods) {
-            String[] parts = testMethod.split("#");
-            String className = parts[0];
-            String methodName = parts[1];
+    }
 
-            System.out.println("Running test: " + testMethod);
+    /**
+     * 运行单个测试方法并返回其覆盖的方法列表。测试超时或执行出错时返回空列表，
+     * 原因见 {@link #lastTestIncomplete()}；断言失败的测试正常返回其覆盖。
+     */
+    public List<String> runTest(String testMethod) {
+        prepare();
 
-            // 重置覆盖率数据
-            JacocoAgentLoader.reset();
+        String[] parts = testMethod.split("#");
+        String className = parts[0];
+        String methodName = parts[1];
 
-            try {
-                runSingleTest(className, methodName);
-            } catch (Exception e) {
-                System.err.println("Error running test " + testMethod + ": " + e.getMessage());
-                e.printStackTrace();
-                // 即使测试失败也添加空覆盖条目
-                result.addCoverage(testMethod, new ArrayList<>());
-                continue;
+        if (Log.isDebugEnabled()) {
+            Log.debug("Running test: " + testMethod);
+        }
+
+        // 重置覆盖率数据
+        JacocoAgentLoader.reset();
+
+        long start = PipelineMetrics.start();
+        lastTestIncomplete = null;
+        try {
+            runSingleTest(className, methodName, timeoutFor(testMethod));
+        } catch (Exception e) {
+            PipelineMetrics.stop("test_run", start);
+            boolean timedOut = e instanceof TestTimeoutException;
+            lastTestIncomplete = timedOut ? CoverageResult.TIMED_OUT : CoverageResult.ERROR;
+            if (!timedOut) {
+                // 测试已结束（以异常结束），超时的测试不计入已运行
+                PipelineMetrics.increment("tests_run");
             }
+            recordDuration(testMethod, start, timedOut);
+            PipelineMetrics.increment("test_errors");
+            Log.warn("Error running test " + testMethod + ": " + e.getMessage(), e);
+            // 即使测试失败也添加空覆盖条目
+            recordLineCoverage(testMethod, null);
+            return new ArrayList<>();
+        }
+        PipelineMetrics.stop("test_run", start);
+        PipelineMetrics.increment("tests_run");
+        recordDuration(testMethod, start, false);
+
+        // 收集覆盖率数据
+        byte[] executionData = JacocoAgentLoader.getExecutionData();
 
-            // 收集覆盖率数据
-            byte[] executionData = JacocoAgentLoader.getExecutionData();
-            System.out.println("Execution data size: " + executionData.length + " bytes");
+        List<String> coveredMethods = attributeCoverage(testMethod, executionData);
+        if (Log.isDebugEnabled()) {
+            Log.debug("  Execution data " + executionData.length + " bytes, covered " +
+                    coveredMethods.size() + " methods");
+        }
+        return coveredMethods;
+    }
+
+    /**
+     * 上一次 runTest 是否因超时而结束。
+     */
+    public boolean lastTestTimedOut() {
+        return CoverageResult.TIMED_OUT.equals(lastTestIncomplete);
+    }
 
-            List<String> coveredMethods = analyzeCoverage(executionData, mapper);
-            result.addCoverage(testMethod, coveredMethods);
+    /**
+     * 上一次 runTest 没有正常结束的原因（超时或执行出错），正常结束时为 null。
+     */
+    public String lastTestIncomplete() {
+        return lastTestIncomplete;
+    }
 
-            System.out.println("  Covered " + coveredMethods.size() + " methods");
+    /**
+     * 停止测试执行线程并关闭项目类加载器；常驻模式 reload 时替换运行器之前调用。
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (testExecutor != null) {
+            testExecutor.shutdownNow();
+            testExecutor = null;
+        }
+        if (projectClassLoader instanceof Closeable) {
+            ((Closeable) projectClassLoader).close();
         }
+        projectClassLoader = null;
+        mapper = null;
+    }
 
-        return result;
+    /**
+     * 长期复用的测试执行线程；只有在测试超时、线程可能卡死时才会被替换。
+     */
+    private synchronized ExecutorService testExecutor() {
+        if (testExecutor == null) {
+            testExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "coverage-test-runner");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return testExecutor;
     }
 
-    private void runSingleTest(String className, String methodName) throws Exception {
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        Future<?> future = executor.submit(() -> {
+    /**
+     * 放弃可能卡死的测试线程。被中断的测试不一定退出，仍在执行的代码会继续命中探针，
+     * 之后测试的覆盖中可能混入它的执行数据。
+     */
+    private synchronized void abandonTestExecutor() {
+        if (testExecutor != null) {
+            testExecutor.shutdownNow();
+            testExecutor = null;
+            PipelineMetrics.increment("test_threads_abandoned");
+            Log.warn("Abandoned a timed-out test thread; if it keeps running, coverage of later tests may include its probes");
+        }
+    }
+
+    private void recordDuration(String testMethod, long start, boolean timedOut) {
+        if (history != null) {
+            history.record(testMethod, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), timedOut);
+        }
+    }
+
+    private void runSingleTest(String className, String methodName, int timeoutSeconds) throws Exception {
+        Future<?> future = testExecutor().submit(() -> {
             ClassLoader originalLoader = Thread.currentThread().getContextClassLoader();
             try {
                 // 设置项目类加载器
                 Thread.currentThread().setContextClassLoader(projectClassLoader);
 
-                System.out.println("Loading test class: " + className);
                 Class<?> testClass = Class.forName(className, true, projectClassLoader);
-
-                System.out.println("Running test: " + className + "#" + methodName);
                 Request request = Request.method(testClass, methodName);
                 Result result = new JUnitCore().run(request);
 
-                System.out.println("Test completed: " + methodName);
-                System.out.println("  Run time: " + result.getRunTime() + "ms");
-                System.out.println("  Tests run: " + result.getRunCount());
-                System.out.println("  Failures: " + result.getFailureCount());
+                if (Log.isDebugEnabled()) {
+                    Log.debug("Test completed: " + methodName + " (" + result.getRunCount() + " run, " +
+                            result.getFailureCount() + " failed, " + result.getRunTime() + "ms)");
+                }
 
                 if (!result.wasSuccessful()) {
-                    for (org.junit.runner.notification.Failure failure : result.getFailures()) {
-                        System.err.println("Test failure: " + failure.getTestHeader());
-                        System.err.println(failure.getTrace());
+                    PipelineMetrics.increment("tests_failed");
+                    for (Failure failure : result.getFailures()) {
+                        Log.warn("Test failure: " + failure.getTestHeader());
+                        if (Log.isDebugEnabled()) {
+                            Log.debug(failure.getTrace());
+                        }
                     }
                 }
-
-                // 添加Jacoco代理状态检查
-                System.out.println("Jacoco agent data size: " +
-                        JacocoAgentLoader.getAgent().getExecutionData(false).length + " bytes");
             } catch (ClassNotFoundException e) {
-                System.out.println("");
+                Log.warn("Test class not found: " + className);
             } catch (Exception e) {
-                System.out.println("");
+                Log.warn("Error running test " + className + "#" + methodName + ": " + e.getMessage(), e);
             } finally {
                 Thread.currentThread().setContextClassLoader(originalLoader);
             }
         });
 
+        // future 完成即表示 JUnit 已返回，探针数据已同步写入，无需再等待
         try {
-            future.get(testTimeout, TimeUnit.SECONDS);
+            future.get(timeoutSeconds, TimeUnit.SECONDS);
         } catch (TimeoutException e) {
             future.cancel(true);
-            throw new RuntimeException("Test timed out after " + testTimeout + " seconds: " + className + "#" + methodName);
+            // 被中断的测试可能不会退出，后续测试换用新线程
+            abandonTestExecutor();
+            PipelineMetrics.increment("tests_timed_out");
+            throw new TestTimeoutException("Test timed out after " + timeoutSeconds + " seconds: " + className + "#" + methodName);
         } catch (ExecutionException e) {
             throw new RuntimeException("Test execution failed: " + e.getCause().getMessage(), e.getCause());
-        } finally {
-            executor.shutdownNow();
-
-            // 给JaCoCo时间写入数据
-            try {
-                Thread.sleep(200);
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-            }
         }
     }
 
-    private List<String> analyzeCoverage(byte[] executionData, MethodCoverageMapper mapper) {
-        if (executionData == null || executionData.length == 0) {
-            System.out.println("No coverage data collected");
+    /**
+     * 解码一次测试（或参数化测试的一次调用）的执行数据，归属到方法；
+     * 行/分支粒度模式下同一份解码结果再累积到该测试的行覆盖数据中。
+     */
+    private List<String> attributeCoverage(String testMethod, byte[] executionData) {
+        ExecutionDataStore executionDataStore = decodeExecutionData(executionData);
+        if (executionDataStore == null) {
+            recordLineCoverage(testMethod, null);
             return new ArrayList<>();
         }
+        recordLineCoverage(testMethod, executionDataStore);
+        return analyzeCoverage(executionDataStore, mapper);
+    }
 
-        // 创建临时目录
-        Path tempDir;
-        try {
-            tempDir = Files.createTempDirectory("coverage-analysis");
-        } catch (IOException e) {
-            System.err.println("Failed to create temp directory: " + e.getMessage());
-            return new ArrayList<>();
+    /**
+     * 行/分支粒度模式下累积一个测试的执行数据：参数化测试各次调用的探针按位或合并，
+     * 取走时再统一分析，分支覆盖不会因逐次合并计数而少算。
+     */
+    private void recordLineCoverage(String testMethod, ExecutionDataStore executionData) {
+        if (!lineGranularity || lineClassBytes == null) {
+            return;
+        }
+        ExecutionDataStore accumulated = lineExecutionData.computeIfAbsent(testMethod, key -> new ExecutionDataStore());
+        if (executionData == null) {
+            return;
+        }
+        synchronized (accumulated) {
+            for (ExecutionData data : executionData.getContents()) {
+                if (data.hasHits()) {
+                    accumulated.put(data);
+                }
+            }
         }
+    }
 
-        // 创建临时的 .exec 文件
-        Path tempExecFile = tempDir.resolve("coverage.exec");
-        try {
-            Files.write(tempExecFile, executionData);
-            System.out.println("Created temp exec file: " + tempExecFile);
-        } catch (IOException e) {
-            System.err.println("Failed to create temp exec file: " + e.getMessage());
-            return new ArrayList<>();
+    /**
+     * 取走并分析某个测试累积的行覆盖，测试未在本对象中执行或未开启行粒度时返回 null。
+     */
+    public LineCoverage takeLineCoverage(String testMethod) {
+        ExecutionDataStore executionData = lineExecutionData.remove(testMethod);
+        if (executionData == null) {
+            return null;
         }
+        synchronized (executionData) {
+            return LineCoverage.analyze(executionData, lineClassBytes);
+        }
+    }
 
-        // 加载执行数据
-        ExecFileLoader execFileLoader = new ExecFileLoader();
+    /**
+     * 在内存中解码执行数据，没有数据或解码失败时返回 null。
+     */
+    private static ExecutionDataStore decodeExecutionData(byte[] executionData) {
+        if (executionData == null || executionData.length == 0) {
+            Log.debug("No coverage data collected");
+            return null;
+        }
+        long start = PipelineMetrics.start();
         try {
-            execFileLoader.load(tempExecFile.toFile());
-            System.out.println("Loaded execution data for " +
-                    execFileLoader.getExecutionDataStore().getContents().size() + " classes");
+            ExecutionDataStore executionDataStore = JacocoAgentLoader.readExecutionData(executionData);
+            PipelineMetrics.stop("exec_decode", start);
+            if (Log.isDebugEnabled()) {
+                Log.debug("Loaded execution data for " + executionDataStore.getContents().size() + " classes");
+            }
+            return executionDataStore;
         } catch (IOException e) {
-            System.err.println("Failed to load exec file: " + e.getMessage());
-            return new ArrayList<>();
+            Log.warn("Failed to read execution data: " + e.getMessage());
+            return null;
         }
+    }
 
-        // 创建覆盖率分析器 - 只分析生产代码目录
-        CoverageAnalyzer analyzer = new CoverageAnalyzer(
-                execFileLoader.getExecutionDataStore(),
-                findClassesDirectory()
-        );
+    /**
+     * 将一次测试的执行数据归属到方法，只依赖预先构建的映射表，可在测试线程之外独立调用。
+     */
+    public static List<String> analyzeCoverage(byte[] executionData, MethodCoverageMapper mapper) {
+        ExecutionDataStore executionDataStore = decodeExecutionData(executionData);
+        return executionDataStore != null ? analyzeCoverage(executionDataStore, mapper) : new ArrayList<>();
+    }
 
-        // 分析覆盖率
+    /**
+     * 将已解码的执行数据归属到方法。
+     */
+    public static List<String> analyzeCoverage(ExecutionDataStore executionDataStore, MethodCoverageMapper mapper) {
+        // 通过预先构建的探针表归属方法，只扫描命中的探针
+        long start = PipelineMetrics.start();
         List<String> coveredMethods = new ArrayList<>();
-        try {
-            Collection<IClassCoverage> classCoverages = analyzer.analyze();
-            System.out.println("Analyzed " + classCoverages.size() + " classes");
-
-            // 收集覆盖的方法
-            for (IClassCoverage classCoverage : classCoverages) {
-                String className = classCoverage.getName().replace('/', '.');
-                System.out.println("Processing class: " + className);
-
-                // 获取类文件的行号映射
-                Map<Integer, String> lineToMethod = mapper.lineToMethodMap.get(className);
-                if (lineToMethod == null) {
-                    continue;
-                }
-
-                // 打印类覆盖率摘要
-                System.out.printf("  Coverage: %d/%d lines covered%n",
-                        classCoverage.getLineCounter().getCoveredCount(),
-                        classCoverage.getLineCounter().getTotalCount());
-
-                // 关键修改：更精确的行号处理方法
-                int firstLine = classCoverage.getFirstLine();
-                int lastLine = classCoverage.getLastLine();
-
-                System.out.println("  Line range: " + firstLine + " - " + lastLine);
-
-                for (int i = firstLine; i <= lastLine; i++) {
-                    ILine line = classCoverage.getLine(i);
-                    if (line == null) {
-                        // 没有行信息，跳过
-                        continue;
-                    }
-
-                    int status = line.getStatus();
-                    if (status == ICounter.FULLY_COVERED || status == ICounter.PARTLY_COVERED || true) {
-                        String methodName = lineToMethod.get(i);
-                        if (methodName != null) {
-                            String methodId = className + "#" + methodName;
-                            if (!coveredMethods.contains(methodId)) {
-                                coveredMethods.add(methodId);
-                                System.out.println("  Covered line " + i + " in method: " + methodId);
-                            }
-                        }
-                    }
-                }
+        int analyzedClasses = 0;
+        for (ExecutionData data : executionDataStore.getContents()) {
+            ProbeMethodTable table = mapper.probeTables.get(data.getId());
+            if (table == null) {
+                // 测试类或依赖库中的类，不在分析范围内
+                continue;
             }
-        } catch (Exception e) {
-            System.err.println("Error during coverage analysis: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            // 清理临时文件
-            try {
-                Files.deleteIfExists(tempExecFile);
-                Files.deleteIfExists(tempDir);
-            } catch (IOException e) {
-                System.err.println("Failed to delete temp files: " + e.getMessage());
+            if (table.collectCoveredMethods(data.getProbes(), coveredMethods)) {
+                analyzedClasses++;
+            } else {
+                PipelineMetrics.increment("probe_mismatches");
+                Log.warn("Probe count mismatch for class: " + data.getName());
             }
         }
+        PipelineMetrics.stop("attribute", start);
+        PipelineMetrics.add("classes_analyzed", analyzedClasses);
+        if (Log.isDebugEnabled()) {
+            Log.debug("Analyzed " + analyzedClasses + " classes");
+        }
 
         return coveredMethods;
     }
@@ -388,4 +849,55 @@ public class CoverageRunner {
     public void setTestTimeout(int seconds) {
         this.testTimeout = seconds;
     }
+
+    /**
+     * 设置测试耗时历史，之后运行的测试按历史收紧超时并记录本次耗时。
+     */
+    public void setHistory(TestHistory history) {
+        this.history = history;
+    }
+
+    public void setBatchByClass(boolean batchByClass) {
+        this.batchByClass = batchByClass;
+    }
+
+    public void setJUnitPlatform(boolean junitPlatform) {
+        this.junitPlatform = junitPlatform;
+    }
+
+    /**
+     * 开启行/分支粒度，需在 prepare 之前调用。
+     */
+    public void setLineGranularity(boolean lineGranularity) {
+        this.lineGranularity = lineGranularity;
+    }
+
+    /**
+     * 设置依赖模块的 classes 目录，需在 prepare 之前调用；这些类加入类路径并参与覆盖映射。
+     */
+    public void setModuleClasspath(List<Path> moduleClasspath) {
+        this.moduleClasspath = new ArrayList<>(moduleClasspath);
+    }
+
+    /**
+     * 作为单个模块运行，需在 prepare 之前调用；找不到构建输出目录时不再退回项目目录本身。
+     */
+    public void setModuleRun(boolean moduleRun) {
+        this.moduleRun = moduleRun;
+    }
+
+    /**
+     * 切换为离线插桩模式，需在 prepare 之前调用。
+     */
+    public void setOfflineInstrumentation(boolean offlineInstrumentation) {
+        this.offlineInstrumentation = offlineInstrumentation;
+    }
+
+    private static class TestTimeoutException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        TestTimeoutException(String message) {
+            super(message);
+        }
+    }
 }
@@ -0,0 +1,116 @@
+package com.coverage.analyzer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 由 {@link WorkerPool} 启动的子 JVM 入口，每个子进程拥有独立的 JaCoCo 代理。
+ * 从标准输入逐行读取测试方法（可附带制表符分隔的本测试超时秒数），每个测试在标准输出写回一行 JSON 结果；
+ * 测试本身的输出被重定向到标准错误，避免污染通信协议。
+ * 标准输入关闭后再写出一行 {"metrics": ...}，把子进程的指标交给父进程合并。
+ */
+public class CoverageWorker {
+    public static void main(String[] args) {
+        // 可选的 --offline、--single-module、--granularity 和 --module-classpath 位于位置参数之前
+        boolean offline = false;
+        boolean moduleRun = false;
+        boolean lineGranularity = false;
+        List<Path> moduleClasspath = new ArrayList<>();
+        while (args.length > 0 && args[0].startsWith("--")) {
+            if ("--offline".equals(args[0])) {
+                offline = true;
+                args = Arrays.copyOfRange(args, 1, args.length);
+            } else if ("--single-module".equals(args[0])) {
+                moduleRun = true;
+                args = Arrays.copyOfRange(args, 1, args.length);
+            } else if ("--granularity".equals(args[0]) && args.length > 1) {
+                lineGranularity = "line".equals(args[1]);
+                args = Arrays.copyOfRange(args, 2, args.length);
+            } else if ("--module-classpath".equals(args[0]) && args.length > 1) {
+                moduleClasspath = AnalyzerOptions.parseClasspath(args[1]);
+                args = Arrays.copyOfRange(args, 2, args.length);
+            } else {
+                break;
+            }
+        }
+        if (args.length < 2) {
+            System.err.println("Usage: CoverageWorker [--offline] [--single-module] [--granularity method|line] [--module-classpath PATHS] <project-path> <test-timeout> [ruleset-path]");
+            System.exit(1);
+        }
+
+        PrintWriter protocol = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        System.setOut(new PrintStream(System.err, true));
+
+        Path projectPath = Paths.get(args[0]);
+        int testTimeout = Integer.parseInt(args[1]);
+        Path rulesetPath = args.length > 2 ? Paths.get(args[2]) : null;
+        Gson gson = new Gson();
+
+        try {
+            JacocoAgentLoader.loadAgent();
+
+            CoverageRunner runner = new CoverageRunner(projectPath, rulesetPath);
+            runner.setTestTimeout(testTimeout);
+            runner.setOfflineInstrumentation(offline);
+            runner.setModuleRun(moduleRun);
+            runner.setLineGranularity(lineGranularity);
+            if (!moduleClasspath.isEmpty()) {
+                runner.setModuleClasspath(moduleClasspath);
+            }
+            runner.prepare();
+
+            BufferedReader requests = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String request;
+            while ((request = requests.readLine()) != null) {
+                if (request.isEmpty()) {
+                    continue;
+                }
+                String[] fields = request.split("\t");
+                String testMethod = fields[0];
+                runner.setTestTimeout(fields.length > 1 ? Integer.parseInt(fields[1]) : testTimeout);
+                long start = System.nanoTime();
+                List<String> coveredMethods = runner.runTest(testMethod);
+
+                JsonObject response = new JsonObject();
+                response.addProperty("test", testMethod);
+                // 子进程内的测试耗时，不含进程启动和类映射
+                response.addProperty("millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                response.addProperty("timed_out", runner.lastTestTimedOut());
+                if (runner.lastTestIncomplete() != null) {
+                    response.addProperty("incomplete", runner.lastTestIncomplete());
+                }
+                response.add("methods", gson.toJsonTree(coveredMethods));
+                LineCoverage lineCoverage = runner.takeLineCoverage(testMethod);
+                if (lineCoverage != null) {
+                    JsonObject encoded = lineCoverage.toJson();
+                    response.add("lines", encoded.get("lines"));
+                    response.add("branches", encoded.get("branches"));
+                }
+                protocol.println(gson.toJson(response));
+                protocol.flush();
+            }
+
+            JsonObject metrics = new JsonObject();
+            metrics.add("metrics", PipelineMetrics.snapshot());
+            protocol.println(gson.toJson(metrics));
+            protocol.flush();
+        } catch (Exception e) {
+            Log.error("Worker failed: " + e.getMessage(), e);
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
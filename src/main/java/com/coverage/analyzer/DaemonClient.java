@@ -0,0 +1,58 @@
+package com.coverage.analyzer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link CoverageDaemon} 的命令行客户端，供 pre-commit 钩子等脚本调用，响应 JSON 原样输出到标准输出。
+ */
+public class DaemonClient {
+    private static final String USAGE = "Usage: java -cp coverage-analyzer.jar com.coverage.analyzer.DaemonClient <port> " +
+            "run [test...] | covering <method> | coverage <test> | status | reload | export | shutdown";
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        JsonObject request = new JsonObject();
+        request.addProperty("command", args[1]);
+        if ("run".equals(args[1]) && args.length > 2) {
+            JsonArray tests = new JsonArray();
+            for (int i = 2; i < args.length; i++) {
+                tests.add(args[i]);
+            }
+            request.add("tests", tests);
+        } else if ("covering".equals(args[1]) && args.length > 2) {
+            request.addProperty("method", args[2]);
+        } else if ("coverage".equals(args[1]) && args.length > 2) {
+            request.addProperty("test", args[2]);
+        }
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            out.println(new Gson().toJson(request));
+            out.flush();
+            String response = in.readLine();
+            System.out.println(response);
+            if (response == null || !new Gson().fromJson(response, JsonObject.class).get("ok").getAsBoolean()) {
+                System.exit(1);
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot reach coverage daemon: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
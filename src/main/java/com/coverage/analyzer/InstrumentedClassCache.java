@@ -0,0 +1,188 @@
+package com.coverage.analyzer;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.runtime.OfflineInstrumentationAccessGenerator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 离线插桩的类缓存。用 JaCoCo 的 Instrumenter 把 classes 目录一次性插桩到以内容哈希命名的目录，
+ * 类字节和 JaCoCo 版本不变时，后续运行和工作子进程直接复用，不再重复插桩。
+ * 插桩后的类通过 Offline 运行时向已加载的代理登记探针，class id 与原始类字节一致。
+ */
+public class InstrumentedClassCache {
+    public static final String DEFAULT_DIRECTORY = "coverage-instrumented";
+    private static final String COMPLETE_MARKER = ".complete";
+
+    private InstrumentedClassCache() {
+    }
+
+    /**
+     * 默认缓存位置：classes 目录的上一级（如 target/coverage-instrumented）。
+     */
+    public static Path defaultRoot(Path classesDir) {
+        Path parent = classesDir.toAbsolutePath().getParent();
+        return (parent != null ? parent : classesDir).resolve(DEFAULT_DIRECTORY);
+    }
+
+    /**
+     * 返回与 classes 目录内容对应的插桩目录，缓存不存在时先完成插桩。
+     */
+    public static Path prepare(Path classesDir, Path cacheRoot) throws IOException {
+        List<Path> classFiles = listClassFiles(classesDir);
+        Path cacheDir = cacheRoot.resolve(contentHash(classesDir, classFiles, JaCoCo.VERSION));
+        if (Files.exists(cacheDir.resolve(COMPLETE_MARKER))) {
+            Log.info("Reusing instrumented classes: " + cacheDir);
+            PipelineMetrics.increment("instrumentation_cache_hits");
+            return cacheDir;
+        }
+
+        long start = PipelineMetrics.start();
+        Files.createDirectories(cacheRoot);
+        Path tempDir = Files.createTempDirectory(cacheRoot, cacheDir.getFileName() + ".tmp");
+        Instrumenter instrumenter = new Instrumenter(new OfflineInstrumentationAccessGenerator());
+        int instrumented = 0;
+        for (Path classFile : classFiles) {
+            byte[] bytes = Files.readAllBytes(classFile);
+            String name = classesDir.relativize(classFile).toString();
+            byte[] output;
+            try {
+                output = instrumenter.instrument(bytes, name);
+                instrumented++;
+            } catch (IOException e) {
+                // 无法插桩的类不放入缓存，由加载器从 classes 目录加载，代理仍会即时插桩
+                Log.warn("Cannot instrument " + name + ", leaving it to the agent: " + e.getMessage());
+                PipelineMetrics.increment("instrumentation_failures");
+                continue;
+            }
+            Path target = tempDir.resolve(name);
+            Files.createDirectories(target.getParent());
+            Files.write(target, output);
+        }
+        Files.createFile(tempDir.resolve(COMPLETE_MARKER));
+        publish(tempDir, cacheDir);
+
+        PipelineMetrics.stop("instrumentation", start);
+        PipelineMetrics.add("classes_instrumented", instrumented);
+        Log.info("Instrumented " + instrumented + " classes into " + cacheDir);
+        return cacheDir;
+    }
+
+    /**
+     * 以目录重命名发布缓存，其他进程同时完成插桩时保留先发布的一份。
+     * 不支持原子重命名，或目标目录是未完成的残留时，逐个复制文件，最后写入完成标记。
+     */
+    private static void publish(Path tempDir, Path cacheDir) throws IOException {
+        try {
+            Files.move(tempDir, cacheDir, StandardCopyOption.ATOMIC_MOVE);
+            return;
+        } catch (FileAlreadyExistsException e) {
+            if (Files.exists(cacheDir.resolve(COMPLETE_MARKER))) {
+                // 其他进程已先发布
+                deleteRecursively(tempDir);
+                return;
+            }
+        } catch (AtomicMoveNotSupportedException e) {
+            Log.debug("Atomic move not supported, copying instrumented classes into " + cacheDir);
+        } catch (IOException e) {
+            if (Files.exists(cacheDir.resolve(COMPLETE_MARKER))) {
+                deleteRecursively(tempDir);
+                return;
+            }
+            if (!Files.isDirectory(cacheDir)) {
+                throw e;
+            }
+        }
+        copyContents(tempDir, cacheDir);
+        deleteRecursively(tempDir);
+    }
+
+    /**
+     * 把插桩结果复制到缓存目录，完成标记最后写入，复制中断时缓存不会被当作完整。
+     */
+    private static void copyContents(Path tempDir, Path cacheDir) throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(tempDir)) {
+            files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            Path relative = tempDir.relativize(file);
+            if (relative.toString().equals(COMPLETE_MARKER)) {
+                continue;
+            }
+            Path target = cacheDir.resolve(relative.toString());
+            Files.createDirectories(target.getParent());
+            Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.write(cacheDir.resolve(COMPLETE_MARKER), new byte[0]);
+    }
+
+    /**
+     * 目录下按路径排序的所有类文件。
+     */
+    static List<Path> listClassFiles(Path classesDir) throws IOException {
+        try (Stream<Path> paths = Files.walk(classesDir)) {
+            return paths.filter(path -> path.toString().endsWith(".class"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * 目录中类文件以外的资源文件（配置、测试数据等），按路径排序。
+     */
+    static List<Path> listResourceFiles(Path classesDir) throws IOException {
+        try (Stream<Path> paths = Files.walk(classesDir)) {
+            return paths.filter(path -> Files.isRegularFile(path) && !path.toString().endsWith(".class"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * 类文件相对路径和内容的 SHA-256（取前 128 位）。salt 参与哈希，
+     * 插桩缓存传入 JaCoCo 版本，插桩器升级后缓存自动失效。
+     */
+    static String contentHash(Path classesDir, List<Path> classFiles, String salt) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(salt.getBytes(StandardCharsets.UTF_8));
+        for (Path classFile : classFiles) {
+            digest.update(classesDir.relativize(classFile).toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Files.readAllBytes(classFile));
+        }
+
+        StringBuilder hex = new StringBuilder();
+        byte[] hash = digest.digest();
+        for (int i = 0; i < 16; i++) {
+            hex.append(String.format("%02x", hash[i]));
+        }
+        return hex.toString();
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
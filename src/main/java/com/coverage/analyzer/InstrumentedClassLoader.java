@@ -0,0 +1,61 @@
+package com.coverage.analyzer;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.security.cert.Certificate;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 项目类加载器：生产代码类从离线插桩缓存中定义，其余类（测试类、依赖）按普通 URLClassLoader 加载。
+ * 缓存中的类没有代码来源位置，JaCoCo 代理默认跳过这类类，不会再次插桩。
+ * 插桩失败的类不在缓存中，从 classes 目录按原位置加载，由代理即时插桩。
+ */
+public class InstrumentedClassLoader extends URLClassLoader {
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final Path instrumentedDir;
+    private final ProtectionDomain noLocationDomain;
+    // 已由本加载器定义过的包；ClassLoader.getPackage 自 Java 9 起已废弃
+    private final Set<String> definedPackages = ConcurrentHashMap.newKeySet();
+
+    public InstrumentedClassLoader(Path instrumentedDir, URL[] urls, ClassLoader parent) {
+        super(urls, parent);
+        this.instrumentedDir = instrumentedDir;
+        this.noLocationDomain = new ProtectionDomain(new CodeSource(null, (Certificate[]) null), null, this, null);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        Path classFile = instrumentedDir.resolve(name.replace('.', '/') + ".class");
+        if (!Files.isRegularFile(classFile)) {
+            return super.findClass(name);
+        }
+
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(classFile);
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+        int lastDot = name.lastIndexOf('.');
+        if (lastDot > 0) {
+            String packageName = name.substring(0, lastDot);
+            if (definedPackages.add(packageName)) {
+                try {
+                    definePackage(packageName, null, null, null, null, null, null, null);
+                } catch (IllegalArgumentException e) {
+                    // 同一包中的测试类已由 URLClassLoader 定义过该包
+                }
+            }
+        }
+        return defineClass(name, bytes, 0, bytes.length, noLocationDomain);
+    }
+}
@@ -0,0 +1,181 @@
+package com.coverage.analyzer;
+
+import org.junit.jupiter.engine.JupiterTestEngine;
+import org.junit.platform.engine.FilterResult;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.discovery.ClassSelector;
+import org.junit.platform.engine.discovery.DiscoverySelectors;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.PostDiscoveryFilter;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+import org.junit.platform.launcher.core.LauncherConfig;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.vintage.engine.VintageTestEngine;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * 基于 JUnit Platform Launcher 的测试执行：所有选中的测试类在一次发现请求中完成发现，
+ * 通过 TestExecutionListener 在每个测试（包括参数化测试的每次调用）边界重置并采集覆盖率。
+ */
+public class JUnitPlatformExecutor {
+    private final ClassLoader projectClassLoader;
+    private final BiFunction<String, byte[], List<String>> coverageAnalyzer;
+    // 运行超时被放弃后置位，被放弃的执行线程不再重置或读取代理数据
+    private volatile boolean cancelled;
+
+    public JUnitPlatformExecutor(ClassLoader projectClassLoader,
+                                 BiFunction<String, byte[], List<String>> coverageAnalyzer) {
+        this.projectClassLoader = projectClassLoader;
+        this.coverageAnalyzer = coverageAnalyzer;
+    }
+
+    /**
+     * 执行选中的测试方法，将每个测试方法（Class#method）覆盖的方法列表写入 coverage。
+     * 结果表和耗时在执行过程中逐步填充，超时中断时已完成的测试结果仍然可用。
+     */
+    public void execute(Map<String, List<String>> methodsByClass, Map<String, List<String>> coverage,
+                        TestHistory.Recorder durations) {
+        Set<String> selected = new LinkedHashSet<>();
+        List<ClassSelector> selectors = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : methodsByClass.entrySet()) {
+            try {
+                Class<?> testClass = Class.forName(entry.getKey(), false, projectClassLoader);
+                selectors.add(DiscoverySelectors.selectClass(testClass));
+                for (String methodName : entry.getValue()) {
+                    selected.add(entry.getKey() + "#" + methodName);
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                Log.warn("Test class not found: " + entry.getKey());
+            }
+        }
+        if (selectors.isEmpty()) {
+            return;
+        }
+
+        // 只保留选中的测试方法
+        PostDiscoveryFilter methodFilter = descriptor -> {
+            String testMethod = testMethodOf(descriptor.getSource());
+            return testMethod == null || selected.contains(testMethod)
+                    ? FilterResult.included("selected")
+                    : FilterResult.excluded("not selected");
+        };
+
+        LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request()
+                .selectors(selectors)
+                .filters(methodFilter)
+                .build();
+
+        // 显式注册引擎，避免合并打包时 META-INF/services 文件互相覆盖
+        LauncherConfig config = LauncherConfig.builder()
+                .enableTestEngineAutoRegistration(false)
+                .addTestEngines(new JupiterTestEngine(), new VintageTestEngine())
+                .build();
+        Launcher launcher = LauncherFactory.create(config);
+
+        PlatformCoverageListener listener = new PlatformCoverageListener(coverage, durations);
+        launcher.execute(request, listener);
+        Log.debug("JUnit Platform run completed: " + listener.testsRun + " tests, " +
+                listener.failures + " failures");
+    }
+
+    /**
+     * 放弃当前运行：执行线程可能仍在运行测试，之后的测试事件不再触碰代理的探针数据，
+     * 以免清掉后续测试的覆盖。
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private static String testMethodOf(Optional<TestSource> source) {
+        if (source.isPresent() && source.get() instanceof MethodSource) {
+            MethodSource methodSource = (MethodSource) source.get();
+            return methodSource.getClassName() + "#" + methodSource.getMethodName();
+        }
+        return null;
+    }
+
+    private class PlatformCoverageListener implements TestExecutionListener {
+        private final Map<String, List<String>> coverage;
+        private final TestHistory.Recorder durations;
+        private TestPlan testPlan;
+        int testsRun;
+        int failures;
+
+        PlatformCoverageListener(Map<String, List<String>> coverage, TestHistory.Recorder durations) {
+            this.coverage = coverage;
+            this.durations = durations;
+        }
+
+        @Override
+        public void testPlanExecutionStarted(TestPlan testPlan) {
+            this.testPlan = testPlan;
+        }
+
+        @Override
+        public void executionStarted(TestIdentifier identifier) {
+            if (identifier.isTest() && !cancelled) {
+                JacocoAgentLoader.reset();
+                durations.started(owningTestMethod(identifier));
+            }
+        }
+
+        @Override
+        public void executionFinished(TestIdentifier identifier, TestExecutionResult result) {
+            if (!identifier.isTest() || cancelled) {
+                return;
+            }
+            testsRun++;
+            PipelineMetrics.increment("tests_run");
+            if (result.getStatus() != TestExecutionResult.Status.SUCCESSFUL) {
+                failures++;
+                PipelineMetrics.increment("tests_failed");
+                Log.warn("Test failure: " + identifier.getDisplayName());
+            }
+
+            String testMethod = owningTestMethod(identifier);
+            if (testMethod == null) {
+                return;
+            }
+            durations.finished(testMethod);
+            List<String> coveredMethods = coverageAnalyzer.apply(testMethod, JacocoAgentLoader.getExecutionData());
+            if (Log.isDebugEnabled()) {
+                Log.debug("  " + identifier.getDisplayName() + ": covered " + coveredMethods.size() + " methods");
+            }
+
+            // 参数化测试、重复测试和动态测试的每次调用合并到声明它们的测试方法
+            coverage.merge(testMethod, coveredMethods, (previous, current) -> {
+                Set<String> merged = new LinkedHashSet<>(previous);
+                merged.addAll(current);
+                return new ArrayList<>(merged);
+            });
+        }
+
+        /**
+         * 动态测试可能没有方法来源，向上查找声明它的 @TestFactory 方法。
+         */
+        private String owningTestMethod(TestIdentifier identifier) {
+            Optional<TestIdentifier> current = Optional.of(identifier);
+            while (current.isPresent()) {
+                String testMethod = testMethodOf(current.get().getSource());
+                if (testMethod != null) {
+                    return testMethod;
+                }
+                current = testPlan != null ? testPlan.getParent(current.get()) : Optional.empty();
+            }
+            return null;
+        }
+    }
+}
@@ -4,7 +4,11 @@ import org.jacoco.agent.rt.IAgent;
 import org.jacoco.agent.rt.RT;
 import org.jacoco.agent.rt.internal_3570298.Agent;
 import org.jacoco.agent.rt.internal_3570298.core.runtime.AgentOptions;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 
@@ -14,28 +18,27 @@ public class JacocoAgentLoader {
     public static synchronized void loadAgent() {
         if (agent == null) {
             try {
-                System.out.println("Attempting to load Jacoco agent via standard method");
+                Log.debug("Attempting to load Jacoco agent via standard method");
                 agent = RT.getAgent();
-                System.out.println("Jacoco agent loaded via RT. Version: " + agent.getVersion());
+                Log.info("Jacoco agent loaded via RT. Version: " + agent.getVersion());
             } catch (IllegalStateException rtEx) {
-                System.out.println("Standard loading failed, trying alternative method");
+                Log.debug("Standard loading failed, trying alternative method");
 
                 try {
                     // 2. 备选加载方式
                     String vmName = ManagementFactory.getRuntimeMXBean().getName();
                     String pid = vmName.split("@")[0];
 
-                    System.out.println("Attempting to load Jacoco agent dynamically for PID: " + pid);
+                    Log.debug("Attempting to load Jacoco agent dynamically for PID: " + pid);
 
                     AgentOptions options = new AgentOptions();
                     options.setOutput("none");
                     options.setAppend(false);
 
                     agent = Agent.getInstance(options);
-                    System.out.println("Jacoco agent dynamically loaded. Version: " + agent.getVersion());
+                    Log.info("Jacoco agent dynamically loaded. Version: " + agent.getVersion());
                 } catch (Exception e) {
-                    System.err.println("Failed to load Jacoco agent: " + e.getMessage());
-                    e.printStackTrace();
+                    Log.error("Failed to load Jacoco agent: " + e.getMessage(), e);
                     throw new RuntimeException("Jacoco agent initialization failed", e);
                 }
             }
@@ -50,17 +53,28 @@ public class JacocoAgentLoader {
 
     public static byte[] getExecutionData() {
         if (agent != null) {
-            try {
-                // 确保数据写入完成
-                agent.dump(false);
-                return agent.getExecutionData(false);
-            } catch (IOException e) {
-                System.err.println("Failed to dump coverage data: " + e.getMessage());
-            }
+            // 探针数据在测试线程中同步写入，直接读取即可，无需先 dump 到代理输出
+            long start = PipelineMetrics.start();
+            byte[] executionData = agent.getExecutionData(false);
+            PipelineMetrics.stop("exec_dump", start);
+            PipelineMetrics.add("exec_data_bytes", executionData.length);
+            return executionData;
         }
         return new byte[0];
     }
 
+    /**
+     * 直接在内存中解码代理导出的执行数据，不经过临时 .exec 文件。
+     */
+    public static ExecutionDataStore readExecutionData(byte[] executionData) throws IOException {
+        ExecutionDataStore executionDataStore = new ExecutionDataStore();
+        ExecutionDataReader reader = new ExecutionDataReader(new ByteArrayInputStream(executionData));
+        reader.setExecutionDataVisitor(executionDataStore);
+        reader.setSessionInfoVisitor(new SessionInfoStore());
+        reader.read();
+        return executionDataStore;
+    }
+
     public static IAgent getAgent() {
         return agent;
     }
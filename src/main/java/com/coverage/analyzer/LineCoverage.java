@@ -0,0 +1,181 @@
+package com.coverage.analyzer;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ILine;
+import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.data.ExecutionDataStore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 单个测试在各个类中覆盖的行和分支，由 JaCoCo Analyzer 的 ILine 状态得到。
+ *
+ * <pre>
+ * 行集合：按行号升序的连续区间，逗号分隔；每个区间写作 "间隔" 或 "间隔+额外行数"，
+ *        间隔是区间起始行与上一个区间结束行之差（第一个区间相对 0），
+ *        如行 12-15、18、20-22 编码为 "12+3,3,2+2"。
+ * 分支：  包含分支的已覆盖行，写作 "间隔:已覆盖分支数/分支总数"，间隔相对上一个分支行，
+ *        如 "14:1/2,6:2/2" 表示第 14 行 2 个分支覆盖 1 个，第 20 行全部覆盖。
+ * </pre>
+ */
+public class LineCoverage {
+    private final Map<String, BitSet> lines = new TreeMap<>();
+    // 类名 -> 行号 -> {已覆盖分支数, 分支总数}
+    private final Map<String, TreeMap<Integer, int[]>> branches = new TreeMap<>();
+
+    /**
+     * 分析一个测试的执行数据，只分析有探针命中的生产代码类。参数化测试的多次调用
+     * 需先把探针合并到同一个 store 中再分析，分支覆盖无法从各次调用的计数合并得到。
+     */
+    public static LineCoverage analyze(ExecutionDataStore executionData, ClassBytesCache classBytesCache) {
+        LineCoverage coverage = new LineCoverage();
+        long start = PipelineMetrics.start();
+        try {
+            for (IClassCoverage classCoverage : new CoverageAnalyzer(executionData, classBytesCache).analyze()) {
+                coverage.add(classCoverage);
+            }
+        } catch (IOException e) {
+            Log.warn("Failed to analyze line coverage: " + e.getMessage());
+        }
+        PipelineMetrics.stop("line_attribute", start);
+        return coverage;
+    }
+
+    private void add(IClassCoverage classCoverage) {
+        if (classCoverage.getFirstLine() == ISourceNode.UNKNOWN_LINE) {
+            // 没有调试行号信息的类无法按行记录
+            return;
+        }
+        String className = classCoverage.getName().replace('/', '.');
+        BitSet covered = new BitSet();
+        TreeMap<Integer, int[]> classBranches = new TreeMap<>();
+        for (int line = classCoverage.getFirstLine(); line <= classCoverage.getLastLine(); line++) {
+            ILine status = classCoverage.getLine(line);
+            int instructions = status.getInstructionCounter().getCoveredCount();
+            if (instructions == 0) {
+                continue;
+            }
+            covered.set(line);
+            ICounter branchCounter = status.getBranchCounter();
+            if (branchCounter.getTotalCount() > 0) {
+                classBranches.put(line, new int[]{branchCounter.getCoveredCount(), branchCounter.getTotalCount()});
+            }
+        }
+        if (!covered.isEmpty()) {
+            lines.put(className, covered);
+        }
+        if (!classBranches.isEmpty()) {
+            branches.put(className, classBranches);
+        }
+    }
+
+    /**
+     * 编码为 {"lines": {类名: 行集合}, "branches": {类名: 分支}}。
+     */
+    public JsonObject toJson() {
+        JsonObject lineJson = new JsonObject();
+        for (Map.Entry<String, BitSet> entry : lines.entrySet()) {
+            lineJson.addProperty(entry.getKey(), encodeLines(entry.getValue()));
+        }
+        JsonObject branchJson = new JsonObject();
+        for (Map.Entry<String, TreeMap<Integer, int[]>> entry : branches.entrySet()) {
+            branchJson.addProperty(entry.getKey(), encodeBranches(entry.getValue()));
+        }
+        JsonObject json = new JsonObject();
+        json.add("lines", lineJson);
+        json.add("branches", branchJson);
+        return json;
+    }
+
+    public static LineCoverage fromJson(JsonObject json) {
+        LineCoverage coverage = new LineCoverage();
+        if (json.has("lines")) {
+            for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject("lines").entrySet()) {
+                BitSet covered = new BitSet();
+                for (int line : decodeLines(entry.getValue().getAsString())) {
+                    covered.set(line);
+                }
+                coverage.lines.put(entry.getKey(), covered);
+            }
+        }
+        if (json.has("branches")) {
+            for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject("branches").entrySet()) {
+                coverage.branches.put(entry.getKey(), decodeBranches(entry.getValue().getAsString()));
+            }
+        }
+        return coverage;
+    }
+
+    static String encodeLines(BitSet covered) {
+        StringBuilder text = new StringBuilder();
+        int previousEnd = 0;
+        int start = covered.nextSetBit(0);
+        while (start >= 0) {
+            int end = covered.nextClearBit(start) - 1;
+            if (text.length() > 0) {
+                text.append(',');
+            }
+            text.append(start - previousEnd);
+            if (end > start) {
+                text.append('+').append(end - start);
+            }
+            previousEnd = end;
+            start = covered.nextSetBit(end + 1);
+        }
+        return text.toString();
+    }
+
+    public static int[] decodeLines(String encoded) {
+        List<Integer> decoded = new ArrayList<>();
+        int previousEnd = 0;
+        for (String run : encoded.isEmpty() ? new String[0] : encoded.split(",")) {
+            int plus = run.indexOf('+');
+            int start = previousEnd + Integer.parseInt(plus >= 0 ? run.substring(0, plus) : run);
+            int end = start + (plus >= 0 ? Integer.parseInt(run.substring(plus + 1)) : 0);
+            for (int line = start; line <= end; line++) {
+                decoded.add(line);
+            }
+            previousEnd = end;
+        }
+        int[] result = new int[decoded.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = decoded.get(i);
+        }
+        return result;
+    }
+
+    static String encodeBranches(TreeMap<Integer, int[]> classBranches) {
+        StringBuilder text = new StringBuilder();
+        int previousLine = 0;
+        for (Map.Entry<Integer, int[]> entry : classBranches.entrySet()) {
+            if (text.length() > 0) {
+                text.append(',');
+            }
+            text.append(entry.getKey() - previousLine).append(':')
+                    .append(entry.getValue()[0]).append('/').append(entry.getValue()[1]);
+            previousLine = entry.getKey();
+        }
+        return text.toString();
+    }
+
+    public static TreeMap<Integer, int[]> decodeBranches(String encoded) {
+        TreeMap<Integer, int[]> decoded = new TreeMap<>();
+        int line = 0;
+        for (String entry : encoded.isEmpty() ? new String[0] : encoded.split(",")) {
+            int colon = entry.indexOf(':');
+            int slash = entry.indexOf('/', colon);
+            line += Integer.parseInt(entry.substring(0, colon));
+            decoded.put(line, new int[]{Integer.parseInt(entry.substring(colon + 1, slash)),
+                    Integer.parseInt(entry.substring(slash + 1))});
+        }
+        return decoded;
+    }
+}
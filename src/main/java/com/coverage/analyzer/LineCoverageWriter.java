@@ -0,0 +1,217 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.CoverageListener;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 行/分支粒度模式下流式写出 coverage_lines.jsonl：每个测试完成后追加一行
+ * {"test": ..., "lines": {...}, "branches": {...}}，编码见 {@link LineCoverage}。
+ * 行覆盖数据由执行测试的一方（CoverageRunner 或 WorkerPool）按测试暂存，写出时取走。
+ * 从日志或上一次报告中复用的测试没有重新执行，沿用上一次 coverage_lines.jsonl 中的行。
+ * 打开时扫描一遍上一次的文件，只记下每个测试的行在文件中的偏移和长度，复用时再按偏移读取。
+ * 上一次的文件就是本次的输出文件（断点续跑）时，先把它改名保留，关闭时删除。
+ */
+public class LineCoverageWriter implements CoverageListener, Closeable {
+    public static final String FILE_NAME = "coverage_lines.jsonl";
+
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final Gson gson = new Gson();
+    private final Function<String, LineCoverage> source;
+    private final Path filePath;
+    private final Writer writer;
+    // 测试 -> 上一次写出的行在哪个文件、哪个位置
+    private final Map<String, PreviousRow> previousRows = new HashMap<>();
+    private final List<FileChannel> previousChannels = new ArrayList<>();
+    // 被改名保留的本次输出文件，关闭时删除
+    private Path movedOutput;
+    private int carriedForward;
+    private int missing;
+
+    /**
+     * @param previousFiles 可沿用的上一次行覆盖文件，可以是本次的输出文件（断点续跑），
+     *                      此时在截断之前改名保留；不存在的文件被忽略
+     */
+    public LineCoverageWriter(Path outputPath, Function<String, LineCoverage> source,
+                              List<Path> previousFiles) throws IOException {
+        this.source = source;
+        Files.createDirectories(outputPath);
+        this.filePath = outputPath.resolve(FILE_NAME);
+        try {
+            for (Path previousFile : previousFiles) {
+                if (!Files.exists(previousFile)) {
+                    continue;
+                }
+                if (Files.exists(filePath) && Files.isSameFile(previousFile, filePath)) {
+                    movedOutput = filePath.resolveSibling(FILE_NAME + ".previous");
+                    Files.move(previousFile, movedOutput, StandardCopyOption.REPLACE_EXISTING);
+                    previousFile = movedOutput;
+                }
+                indexPreviousRows(previousFile);
+            }
+            this.writer = Files.newBufferedWriter(filePath, StandardCharsets.UTF_8);
+        } catch (IOException | RuntimeException e) {
+            closePrevious();
+            throw e;
+        }
+    }
+
+    /**
+     * 逐块扫描上一次的文件，记下每个完整行的偏移和长度；没有换行结尾的最后一行是被中断的写入，忽略。
+     */
+    private void indexPreviousRows(Path previousFile) throws IOException {
+        FileChannel channel = FileChannel.open(previousFile, StandardOpenOption.READ);
+        previousChannels.add(channel);
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        ByteBuffer chunk = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long position = 0;
+        long lineStart = 0;
+        while (channel.read(chunk, position) > 0) {
+            chunk.flip();
+            while (chunk.hasRemaining()) {
+                byte b = chunk.get();
+                position++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                String testMethod = testOf(line.toByteArray(), previousFile);
+                if (testMethod != null) {
+                    previousRows.put(testMethod, new PreviousRow(channel, lineStart, line.size()));
+                }
+                line.reset();
+                lineStart = position;
+            }
+            chunk.clear();
+        }
+    }
+
+    /**
+     * 只读到行首的 test 字段为止，不解析其余的行和分支数据。
+     */
+    private static String testOf(byte[] line, Path previousFile) {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(
+                new ByteArrayInputStream(line), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("test".equals(reader.nextName())) {
+                    return reader.nextString();
+                }
+                reader.skipValue();
+            }
+        } catch (IOException | IllegalStateException e) {
+            Log.debug("Skipping unreadable line coverage row in " + previousFile);
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized void onCoverage(String testMethod, List<String> coveredMethods) {
+        LineCoverage lineCoverage = source.apply(testMethod);
+        String row;
+        if (lineCoverage != null) {
+            JsonObject entry = new JsonObject();
+            entry.addProperty("test", testMethod);
+            JsonObject encoded = lineCoverage.toJson();
+            entry.add("lines", encoded.get("lines"));
+            entry.add("branches", encoded.get("branches"));
+            row = gson.toJson(entry);
+        } else {
+            // 从日志或上一次报告中复用的测试没有重新执行，沿用上一次的行
+            PreviousRow previous = previousRows.get(testMethod);
+            if (previous == null) {
+                missing++;
+                return;
+            }
+            row = previous.read(testMethod);
+            carriedForward++;
+        }
+        try {
+            writer.write(row);
+            writer.write('\n');
+            // 每行完整写出，断点续跑时可以沿用已完成测试的行
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write line coverage for " + testMethod, e);
+        }
+    }
+
+    @Override
+    public synchronized void onIncomplete(String testMethod, String reason) {
+        // 没有正常结束的测试不写行，丢弃执行方暂存的部分数据
+        source.apply(testMethod);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+        closePrevious();
+        if (carriedForward > 0) {
+            Log.info("Line coverage of " + carriedForward + " reused tests carried forward from the previous run");
+        }
+        if (missing > 0) {
+            Log.warn("No line coverage for " + missing + " reused tests: their previous rows were not found");
+        }
+        Log.info("Line coverage saved to: " + filePath);
+    }
+
+    private void closePrevious() throws IOException {
+        for (FileChannel channel : previousChannels) {
+            channel.close();
+        }
+        previousChannels.clear();
+        previousRows.clear();
+        if (movedOutput != null) {
+            Files.deleteIfExists(movedOutput);
+            movedOutput = null;
+        }
+    }
+
+    private static class PreviousRow {
+        final FileChannel channel;
+        final long offset;
+        final int length;
+
+        PreviousRow(FileChannel channel, long offset, int length) {
+            this.channel = channel;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        String read(String testMethod) {
+            ByteBuffer bytes = ByteBuffer.allocate(length);
+            try {
+                while (bytes.hasRemaining()) {
+                    if (channel.read(bytes, offset + bytes.position()) < 0) {
+                        throw new IOException("unexpected end of file");
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read previous line coverage of " + testMethod, e);
+            }
+            return new String(bytes.array(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.coverage.analyzer;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带级别的异步日志。调用线程只把消息放入固定容量的环形缓冲区，
+ * 由后台线程批量写到控制台，测试热循环中不再有逐行同步的 System.out 调用。
+ * 默认 INFO 级别只输出进度和汇总信息，逐类、逐测试的细节属于 DEBUG。
+ */
+public final class Log {
+    /** 子 JVM 通过该系统属性继承父进程的日志级别。 */
+    public static final String LEVEL_PROPERTY = "coverage.log.level";
+
+    private static final int CAPACITY = 8192;
+    private static final int MAX_BATCH = 1024;
+    private static final long FLUSH_TIMEOUT_MS = 5000;
+
+    public enum Level {
+        ERROR, WARN, INFO, DEBUG;
+
+        public static Level parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown log level: " + name);
+            }
+        }
+    }
+
+    private static final BlockingQueue<Record> ring = new ArrayBlockingQueue<>(CAPACITY);
+    private static final Object progress = new Object();
+    private static volatile Level level = Level.parse(System.getProperty(LEVEL_PROPERTY, "info"));
+    private static long enqueued;
+    private static long written;
+    private static Thread writer;
+
+    private Log() {
+    }
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static boolean isEnabled(Level target) {
+        return target.compareTo(level) <= 0;
+    }
+
+    public static boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    public static void debug(String message) {
+        log(Level.DEBUG, message, null);
+    }
+
+    public static void info(String message) {
+        log(Level.INFO, message, null);
+    }
+
+    public static void warn(String message) {
+        log(Level.WARN, message, null);
+    }
+
+    public static void warn(String message, Throwable error) {
+        log(Level.WARN, message, error);
+    }
+
+    public static void error(String message) {
+        log(Level.ERROR, message, null);
+    }
+
+    public static void error(String message, Throwable error) {
+        log(Level.ERROR, message, error);
+    }
+
+    /**
+     * 异常堆栈只在 DEBUG 级别附加到消息后面。
+     */
+    private static void log(Level target, String message, Throwable error) {
+        if (!isEnabled(target)) {
+            return;
+        }
+        if (error != null && isDebugEnabled()) {
+            StringWriter trace = new StringWriter();
+            error.printStackTrace(new PrintWriter(trace));
+            message = message + System.lineSeparator() + trace.toString().trim();
+        }
+
+        ensureWriter();
+        synchronized (progress) {
+            enqueued++;
+        }
+        try {
+            // 缓冲区满时阻塞调用方，日志不会丢失
+            ring.put(new Record(target.compareTo(Level.WARN) <= 0, message));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            markWritten(1);
+        }
+    }
+
+    /**
+     * 等待已提交的日志全部写出，用于退出前和需要与其他输出保持顺序的场景。
+     */
+    public static void flush() {
+        long deadline = System.currentTimeMillis() + FLUSH_TIMEOUT_MS;
+        synchronized (progress) {
+            long target = enqueued;
+            while (written < target) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return;
+                }
+                try {
+                    progress.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static synchronized void ensureWriter() {
+        if (writer != null) {
+            return;
+        }
+        writer = new Thread(Log::drain, "coverage-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "coverage-log-flush"));
+    }
+
+    private static void drain() {
+        List<Record> batch = new ArrayList<>(MAX_BATCH);
+        StringBuilder text = new StringBuilder();
+        while (true) {
+            try {
+                batch.add(ring.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            ring.drainTo(batch, MAX_BATCH - 1);
+
+            // 连续写到同一个流的消息合并为一次写入；每批重新读取 System.out，
+            // 以便工作子进程把标准输出重定向后日志随之改道
+            PrintStream out = System.out;
+            PrintStream err = System.err;
+            boolean toErr = batch.get(0).toErr;
+            for (Record record : batch) {
+                if (record.toErr != toErr) {
+                    write(toErr ? err : out, text);
+                    toErr = record.toErr;
+                }
+                text.append(record.message).append(System.lineSeparator());
+            }
+            write(toErr ? err : out, text);
+
+            markWritten(batch.size());
+            batch.clear();
+        }
+    }
+
+    private static void write(PrintStream stream, StringBuilder text) {
+        stream.print(text);
+        stream.flush();
+        text.setLength(0);
+    }
+
+    private static void markWritten(int count) {
+        synchronized (progress) {
+            written += count;
+            progress.notifyAll();
+        }
+    }
+
+    private static class Record {
+        final boolean toErr;
+        final String message;
+
+        Record(boolean toErr, String message) {
+            this.toErr = toErr;
+            this.message = message;
+        }
+    }
+}
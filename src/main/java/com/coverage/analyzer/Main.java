@@ -1,54 +1,330 @@
 package com.coverage.analyzer;
 
 import com.coverage.analyzer.models.CoverageResult;
+import com.coverage.analyzer.models.CoverageSpillFile;
+import com.coverage.analyzer.models.ProjectModel;
+import com.coverage.analyzer.models.ProjectModule;
 import com.coverage.analyzer.models.ProjectStats;
 
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class Main {
+    // 单个测试的默认超时（秒），有耗时历史时按历史收紧
+    static final int TEST_TIMEOUT_SECONDS = 120;
+
     public static void main(String[] args) {
-        if (args.length < 1) {
-            System.err.println("Usage: java -javaagent:jacocoagent.jar=output=none -jar coverage-analyzer.jar <project-path> [output-path] [ruleset-path]");
+        AnalyzerOptions options;
+        try {
+            options = AnalyzerOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(AnalyzerOptions.USAGE);
             System.exit(1);
+            return;
         }
 
-        Path projectPath = Paths.get(args[0]);
-        Path outputPath = args.length > 1 ? Paths.get(args[1]) : Paths.get(".");
-        Path rulesetPath = args.length > 2 ? Paths.get(args[2]) : null;
+        Log.setLevel(options.logLevel);
+        Path projectPath = options.projectPath;
+        Path outputPath = options.outputPath;
+        Path rulesetPath = options.rulesetPath;
+        CoverageSpillFile spillFile = null;
+        CoverageJournal journal = null;
+        LineCoverageWriter lineWriter = null;
 
+        long runStart = PipelineMetrics.start();
         try {
             // 1. 加载Jacoco代理
             JacocoAgentLoader.loadAgent();
 
+            List<ProjectModule> modules = options.singleModule ?
+                    Collections.<ProjectModule>emptyList() : ModuleDiscovery.discover(projectPath);
+            if (options.daemonPort >= 0) {
+                if (!modules.isEmpty()) {
+                    // 常驻进程只持有一个项目的类加载器和映射表
+                    Log.error("--daemon does not support multi-module projects (" + modules.size() +
+                            " modules found), run it on one module or add --single-module");
+                    System.exit(1);
+                }
+                runDaemon(options);
+                return;
+            }
+            if (!modules.isEmpty()) {
+                int failedModules = runModules(options, modules);
+                PipelineMetrics.stop("total", runStart);
+                PipelineMetrics.export(outputPath);
+                if (failedModules > 0) {
+                    // 合并报告仍然写出，但缺少失败模块的测试，整次运行以失败退出
+                    Log.error("Analysis incomplete: " + failedModules + " of " + modules.size() +
+                            " modules failed, the merged report is partial");
+                    System.exit(1);
+                }
+                Log.info("Analysis completed successfully!");
+                return;
+            }
+
             // 2. 解析项目结构
             ProjectParser parser = new ProjectParser(projectPath);
-            ProjectStats stats = parser.parse();
+            ProjectModel model = parser.parse();
+            ProjectStats stats = model.getStats();
+
+            TestHistory history = null;
+            if (options.history) {
+                // 测试耗时历史：收紧单个测试的超时，并记录本次耗时供下次排序
+                history = TestHistory.load(outputPath);
+            }
+            CoverageRunner runner = createRunner(options, model, history);
+            List<String> testMethods = runner.findTestMethods();
+            if (options.shard != null) {
+                testMethods = options.shard.select(testMethods);
+                Log.info("Shard " + options.shard + ": " + testMethods.size() + " tests");
+            }
+
+            // 类指纹在运行测试前计算，与本次结果对应的是运行时的类
+            ClassFingerprints fingerprints = runner.fingerprints();
+            ChangeImpactSelector impactSelector = options.changedSince != null ?
+                    new ChangeImpactSelector(options.changedSince, fingerprints) : null;
 
             // 设置报告中的测试方法数量
-            int reportedTestCount = Math.min(stats.getNumTestMethods(), 500);
+            int reportedTestCount = testMethods.size();
             stats.setReportedTestMethods(reportedTestCount);
 
-            System.out.println("Project stats: " + stats.getNumJavaFiles() + " files, " +
+            Log.info("Project stats: " + stats.getNumJavaFiles() + " files, " +
                     reportedTestCount + " tests");
 
             // 3. 运行测试收集覆盖率
             long startTime = System.currentTimeMillis();
-            CoverageRunner runner = new CoverageRunner(projectPath, rulesetPath);
-            runner.setTestTimeout(120);
-            CoverageResult coverageResult = runner.collectCoverage();
+            long collectStart = PipelineMetrics.start();
+            // 离线插桩在父进程中完成一次，工作子进程直接复用缓存
+            if (options.offline) {
+                runner.prepareClassLoader();
+            }
+            CoverageResult coverageResult = new CoverageResult();
+            coverageResult.addListener(new ProgressReporter(testMethods.size()));
+            StreamingResultExporter streamingExporter = null;
+            if (options.stream) {
+                // 流式模式：每个测试完成后立即写入报告，结果不在内存中保留
+                streamingExporter = new StreamingResultExporter(outputPath, model);
+                coverageResult.addListener(streamingExporter);
+                coverageResult.setRetainCoverage(false);
+                if (options.memoryBudgetMb > 0) {
+                    Log.warn("--memory-budget is ignored with --stream, which keeps no results in memory");
+                }
+            } else if (options.memoryBudgetMb > 0) {
+                // 内存预算：超出后已完成的结果溢出到磁盘
+                spillFile = new CoverageSpillFile(outputPath.resolve("coverage_spill.bin"));
+                coverageResult.setMemoryBudget(options.memoryBudgetMb * 1024 * 1024, spillFile);
+            }
+            WorkerPool pool = null;
+            if (options.workers > 1) {
+                // 多 JVM 模式：测试分发给各自带有 JaCoCo 代理的子进程
+                pool = new WorkerPool(projectPath, rulesetPath, options.workers);
+                pool.setTestTimeout(TEST_TIMEOUT_SECONDS);
+                pool.setOfflineInstrumentation(options.offline);
+                pool.setModuleRun(options.singleModule);
+                pool.setModuleClasspath(options.moduleClasspath);
+                pool.setLineGranularity(options.lineGranularity);
+                if (history != null) {
+                    pool.setHistory(history);
+                }
+            }
+            if (options.lineGranularity) {
+                // 行/分支粒度：每个测试覆盖的行和分支流式写入 coverage_lines.jsonl
+                runner.setLineGranularity(true);
+                // 复用的测试沿用上一次的行：变更影响选择取自对比目录，断点续跑取自本次输出目录
+                List<Path> previousLineFiles = new ArrayList<>();
+                if (impactSelector != null) {
+                    previousLineFiles.add(options.changedSince.resolve(LineCoverageWriter.FILE_NAME));
+                }
+                if (options.resume) {
+                    previousLineFiles.add(outputPath.resolve(LineCoverageWriter.FILE_NAME));
+                }
+                lineWriter = new LineCoverageWriter(outputPath,
+                        pool != null ? pool::takeLineCoverage : runner::takeLineCoverage, previousLineFiles);
+                coverageResult.addListener(lineWriter);
+            }
+            if (impactSelector != null) {
+                // 变更影响选择：未受影响的测试沿用上一次报告中的结果
+                testMethods = impactSelector.select(testMethods, coverageResult);
+            }
+            if (options.resume) {
+                // 断点续跑：日志中仍然有效的测试结果直接复用，只运行其余测试
+                journal = runner.openJournal(outputPath.resolve(CoverageJournal.FILE_NAME));
+                testMethods = journal.resume(testMethods, coverageResult);
+            }
+            if (options.workers > 1 && (options.batch || options.platform)) {
+                Log.warn("--batch and --platform are not supported with --workers, tests run one at a time in each worker");
+            }
+            List<String> quarantined = new ArrayList<>();
+            if (history != null) {
+                // 耗时长的测试先运行；连续超时的测试隔离到最后单独运行，不拖慢其余测试
+                List<String> scheduled = new ArrayList<>();
+                for (String testMethod : testMethods) {
+                    if (history.isQuarantined(testMethod)) {
+                        quarantined.add(testMethod);
+                    } else {
+                        scheduled.add(testMethod);
+                    }
+                }
+                testMethods = history.orderLongestFirst(scheduled);
+                PipelineMetrics.add("tests_quarantined", quarantined.size());
+            }
+            if (pool != null) {
+                pool.collectCoverage(testMethods, coverageResult);
+            } else {
+                runner.collectCoverage(testMethods, coverageResult);
+            }
+            if (!quarantined.isEmpty()) {
+                Log.info("Running " + quarantined.size() + " quarantined tests that timed out repeatedly");
+                if (pool != null) {
+                    pool.collectCoverage(quarantined, coverageResult);
+                } else {
+                    runner.collectCoverage(quarantined, coverageResult);
+                }
+            }
             long endTime = System.currentTimeMillis();
+            PipelineMetrics.stop("collect_coverage", collectStart);
+            reportIncomplete(coverageResult);
             long durationSec = (endTime - startTime) / 1000;
 
             // 4. 导出合并结果
-            ResultExporter exporter = new ResultExporter(outputPath);
-            exporter.export(projectPath, stats, coverageResult);
+            long exportStart = PipelineMetrics.start();
+            if (lineWriter != null) {
+                lineWriter.close();
+                lineWriter = null;
+            }
+            if (streamingExporter != null) {
+                streamingExporter.close();
+                if (options.binary) {
+                    Log.warn("Binary report needs in-memory results, skipped in --stream mode");
+                }
+                Log.warn("Coverage index needs in-memory results, skipped in --stream mode");
+            } else {
+                ResultExporter exporter = new ResultExporter(outputPath);
+                exporter.export(model, coverageResult);
+                if (options.binary) {
+                    exporter.exportBinary(model, coverageResult);
+                }
+            }
+            fingerprints.save(outputPath);
+            if (history != null) {
+                history.save(outputPath);
+            }
+            PipelineMetrics.stop("export", exportStart);
+
+            // 各阶段耗时和计数器写在报告旁边
+            PipelineMetrics.stop("total", runStart);
+            PipelineMetrics.export(outputPath);
 
-            System.out.println("Analysis completed successfully!");
-            System.out.println("执行耗时（秒）: " + durationSec);
+            Log.info("Analysis completed successfully!");
+            Log.info("执行耗时（秒）: " + durationSec);
         } catch (Exception e) {
-            System.err.println("Error during analysis: " + e.getMessage());
+            Log.error("Error during analysis: " + e.getMessage(), e);
             System.exit(1);
+        } finally {
+            if (lineWriter != null) {
+                try {
+                    lineWriter.close();
+                } catch (Exception e) {
+                    Log.warn("Failed to close line coverage file: " + e.getMessage());
+                }
+            }
+            if (journal != null) {
+                try {
+                    journal.close();
+                } catch (Exception e) {
+                    Log.warn("Failed to close journal: " + e.getMessage());
+                }
+            }
+            if (spillFile != null) {
+                try {
+                    spillFile.close();
+                } catch (Exception e) {
+                    Log.warn("Failed to delete spill file: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 按命令行选项创建运行器，单次运行和常驻模式（包括每次 reload）使用同一套配置。
+     */
+    static CoverageRunner createRunner(AnalyzerOptions options, ProjectModel model, TestHistory history)
+            throws Exception {
+        CoverageRunner runner = new CoverageRunner(options.projectPath, options.rulesetPath, model);
+        // 模块运行（多模块项目的子进程或 --single-module）只使用构建输出目录
+        runner.setModuleRun(options.singleModule);
+        if (!options.moduleClasspath.isEmpty()) {
+            // 由多模块父进程传入的依赖模块 classes 目录
+            runner.setModuleClasspath(options.moduleClasspath);
+        }
+        runner.setTestTimeout(TEST_TIMEOUT_SECONDS);
+        runner.setBatchByClass(options.batch);
+        runner.setJUnitPlatform(options.platform);
+        runner.setOfflineInstrumentation(options.offline);
+        if (history != null) {
+            runner.setHistory(history);
+        }
+        return runner;
+    }
+
+    /**
+     * 多模块项目：各模块在子进程中并发分析，报告写在 modules 子目录，合并后的报告写在输出目录。
+     * 子进程各自流式写出或溢出结果，父进程在内存中合并。
+     */
+    private static int runModules(AnalyzerOptions options, List<ProjectModule> modules) throws Exception {
+        Log.info("Found " + modules.size() + " modules in " + options.projectPath);
+        if (options.stream || options.memoryBudgetMb > 0) {
+            Log.info("--stream and --memory-budget apply to each module, the merged report is built in memory");
+        }
+
+        // 统计信息覆盖整个源码树
+        ProjectModel model = new ProjectParser(options.projectPath).parse();
+        CoverageResult coverageResult = new CoverageResult();
+        long collectStart = PipelineMetrics.start();
+        MultiModuleRunner moduleRunner = new MultiModuleRunner(options, modules);
+        moduleRunner.collectCoverage(coverageResult);
+        PipelineMetrics.stop("collect_coverage", collectStart);
+        // tests_incomplete 已随各模块的指标合并，这里只提示
+        int incomplete = coverageResult.getIncompleteTests().size();
+        if (incomplete > 0) {
+            Log.warn(incomplete + " tests did not complete, they are listed under incomplete_tests in the report");
+        }
+        model.getStats().setReportedTestMethods(coverageResult.getTestMethods().size());
+
+        long exportStart = PipelineMetrics.start();
+        ResultExporter exporter = new ResultExporter(options.outputPath);
+        exporter.export(model, coverageResult);
+        if (options.binary) {
+            exporter.exportBinary(model, coverageResult);
+        }
+        PipelineMetrics.stop("export", exportStart);
+        return moduleRunner.getFailedModules().size();
+    }
+
+    private static void reportIncomplete(CoverageResult coverageResult) {
+        int incomplete = coverageResult.getIncompleteTests().size();
+        PipelineMetrics.add("tests_incomplete", incomplete);
+        if (incomplete > 0) {
+            Log.warn(incomplete + " tests did not complete, they are listed under incomplete_tests in the report");
+        }
+    }
+
+    /**
+     * 常驻模式：先完整运行一次并导出报告，之后保持映射表和覆盖结果，在本机端口上响应请求。
+     */
+    private static void runDaemon(AnalyzerOptions options) throws Exception {
+        if (options.workers > 1 || options.stream || options.memoryBudgetMb > 0 || options.resume ||
+                options.changedSince != null || options.lineGranularity) {
+            Log.warn("--workers, --stream, --memory-budget, --resume, --changed-since and --granularity are ignored in --daemon mode");
         }
+        CoverageDaemon daemon = new CoverageDaemon(options);
+        daemon.load();
+        daemon.run(daemon.selectedTests());
+        daemon.export();
+        daemon.serve(options.daemonPort);
+        PipelineMetrics.export(options.outputPath);
     }
 }
@@ -0,0 +1,229 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.ProjectModule;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 多模块项目发现：Maven 按 pom.xml 的 &lt;modules&gt; 递归展开，Gradle 按 settings.gradle(.kts) 的 include。
+ * 模块间依赖取自 Maven 依赖中与反应堆模块 artifactId 相同的项，或 Gradle 构建脚本中的 project(':name')。
+ * 单模块项目返回空列表。
+ */
+public class ModuleDiscovery {
+    private static final Pattern QUOTED = Pattern.compile("['\"]([^'\"]+)['\"]");
+    private static final Pattern PROJECT_DEPENDENCY =
+            Pattern.compile("project\\s*\\(\\s*(?:path\\s*[:=]\\s*)?['\"](:[^'\"]+)['\"]");
+
+    private final Path root;
+    private final Map<String, ProjectModule> modules = new LinkedHashMap<>();
+    // 模块标识（Maven artifactId 或 Gradle 项目路径）到模块
+    private final Map<String, ProjectModule> modulesById = new LinkedHashMap<>();
+    // 模块到其声明的依赖标识
+    private final Map<ProjectModule, List<String>> declaredDependencies = new LinkedHashMap<>();
+
+    private ModuleDiscovery(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    public static List<ProjectModule> discover(Path root) throws IOException {
+        ModuleDiscovery discovery = new ModuleDiscovery(root);
+        if (Files.exists(discovery.root.resolve("pom.xml"))) {
+            discovery.discoverMaven(discovery.root);
+        } else {
+            Path settings = discovery.root.resolve("settings.gradle");
+            if (!Files.exists(settings)) {
+                settings = discovery.root.resolve("settings.gradle.kts");
+            }
+            if (Files.exists(settings)) {
+                discovery.discoverGradle(settings);
+            }
+        }
+        // 只有根目录自身时按单模块项目处理
+        if (discovery.modules.isEmpty() || (discovery.modules.size() == 1 && discovery.modules.containsKey("."))) {
+            return new ArrayList<>();
+        }
+        discovery.resolveDependencies();
+        return new ArrayList<>(discovery.modules.values());
+    }
+
+    /**
+     * 模块运行测试时需要的其他模块：直接依赖及其传递依赖，按广度优先顺序。
+     */
+    public static List<ProjectModule> transitiveDependencies(ProjectModule module) {
+        Set<ProjectModule> visited = new LinkedHashSet<>();
+        Deque<ProjectModule> queue = new ArrayDeque<>(module.getDependencies());
+        while (!queue.isEmpty()) {
+            ProjectModule dependency = queue.poll();
+            if (dependency != module && visited.add(dependency)) {
+                queue.addAll(dependency.getDependencies());
+            }
+        }
+        return new ArrayList<>(visited);
+    }
+
+    private void discoverMaven(Path moduleDir) throws IOException {
+        Element project = parsePom(moduleDir.resolve("pom.xml"));
+        if (project == null) {
+            return;
+        }
+        List<String> childModules = childTexts(child(project, "modules"), "module");
+        // 聚合模块本身没有代码，只展开其子模块
+        if (!"pom".equals(childText(project, "packaging"))) {
+            ProjectModule module = addModule(moduleDir);
+            String artifactId = childText(project, "artifactId");
+            if (artifactId != null) {
+                modulesById.put(artifactId, module);
+            }
+            List<String> dependencies = new ArrayList<>();
+            for (Element dependency : children(child(project, "dependencies"), "dependency")) {
+                String dependencyId = childText(dependency, "artifactId");
+                if (dependencyId != null) {
+                    dependencies.add(dependencyId);
+                }
+            }
+            declaredDependencies.put(module, dependencies);
+        }
+        for (String childModule : childModules) {
+            Path childDir = moduleDir.resolve(childModule).normalize();
+            // <module> 也可以直接指向子模块的 pom 文件
+            if (Files.isRegularFile(childDir)) {
+                childDir = childDir.getParent();
+            }
+            if (Files.exists(childDir.resolve("pom.xml"))) {
+                discoverMaven(childDir);
+            } else {
+                Log.warn("Module without pom.xml skipped: " + childDir);
+            }
+        }
+    }
+
+    private void discoverGradle(Path settings) throws IOException {
+        for (String line : Files.readAllLines(settings, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (!trimmed.startsWith("include")) {
+                continue;
+            }
+            Matcher matcher = QUOTED.matcher(trimmed);
+            while (matcher.find()) {
+                String projectPath = matcher.group(1).startsWith(":") ? matcher.group(1) : ":" + matcher.group(1);
+                Path moduleDir = root.resolve(projectPath.substring(1).replace(':', '/')).normalize();
+                if (!Files.isDirectory(moduleDir)) {
+                    Log.warn("Gradle project directory not found: " + moduleDir);
+                    continue;
+                }
+                ProjectModule module = addModule(moduleDir);
+                modulesById.put(projectPath, module);
+                declaredDependencies.put(module, gradleProjectDependencies(moduleDir));
+            }
+        }
+        // 根项目自身也可以包含代码
+        if (!modules.isEmpty() && Files.isDirectory(root.resolve("src"))) {
+            ProjectModule rootModule = addModule(root);
+            modulesById.put(":", rootModule);
+            declaredDependencies.put(rootModule, gradleProjectDependencies(root));
+        }
+    }
+
+    private static List<String> gradleProjectDependencies(Path moduleDir) throws IOException {
+        List<String> dependencies = new ArrayList<>();
+        for (String script : new String[]{"build.gradle", "build.gradle.kts"}) {
+            Path buildFile = moduleDir.resolve(script);
+            if (!Files.exists(buildFile)) {
+                continue;
+            }
+            Matcher matcher = PROJECT_DEPENDENCY.matcher(new String(Files.readAllBytes(buildFile), StandardCharsets.UTF_8));
+            while (matcher.find()) {
+                dependencies.add(matcher.group(1));
+            }
+        }
+        return dependencies;
+    }
+
+    private ProjectModule addModule(Path moduleDir) {
+        String name = moduleDir.equals(root) ? "." : root.relativize(moduleDir).toString().replace('\\', '/');
+        return modules.computeIfAbsent(name, key -> new ProjectModule(key, moduleDir));
+    }
+
+    private void resolveDependencies() {
+        for (Map.Entry<ProjectModule, List<String>> entry : declaredDependencies.entrySet()) {
+            for (String dependencyId : entry.getValue()) {
+                ProjectModule dependency = modulesById.get(dependencyId);
+                if (dependency != null) {
+                    entry.getKey().addDependency(dependency);
+                }
+            }
+        }
+    }
+
+    private static Element parsePom(Path pom) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            // pom.xml 不需要 DTD：拒绝 DOCTYPE，也不加载外部 DTD 和实体
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            factory.setXIncludeAware(false);
+            factory.setExpandEntityReferences(false);
+            Document document = factory.newDocumentBuilder().parse(pom.toFile());
+            return document.getDocumentElement();
+        } catch (Exception e) {
+            Log.warn("Failed to parse " + pom + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static Element child(Element parent, String name) {
+        List<Element> matches = children(parent, name);
+        return matches.isEmpty() ? null : matches.get(0);
+    }
+
+    /**
+     * 直接子元素，不包含 profiles、dependencyManagement 等嵌套位置中的同名元素。
+     */
+    private static List<Element> children(Element parent, String name) {
+        List<Element> matches = new ArrayList<>();
+        if (parent == null) {
+            return matches;
+        }
+        NodeList nodes = parent.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Node node = nodes.item(i);
+            if (node instanceof Element && name.equals(((Element) node).getTagName())) {
+                matches.add((Element) node);
+            }
+        }
+        return matches;
+    }
+
+    private static String childText(Element parent, String name) {
+        Element element = child(parent, name);
+        return element != null ? element.getTextContent().trim() : null;
+    }
+
+    private static List<String> childTexts(Element parent, String name) {
+        List<String> texts = new ArrayList<>();
+        for (Element element : children(parent, name)) {
+            texts.add(element.getTextContent().trim());
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,333 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.CoverageListener;
+import com.coverage.analyzer.models.CoverageResult;
+import com.coverage.analyzer.models.ProjectModule;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 多模块项目：每个模块在独立的子 JVM（带 JaCoCo 代理）中完整运行一次分析，
+ * 类路径包含该模块依赖的其他模块的 classes 目录；多个模块并发运行，
+ * 各模块的报告写在 output/modules/&lt;模块&gt; 下，最后合并为一个覆盖结果。
+ * 不同模块中同名的测试（相同的类名和方法名）只保留先合并的模块的结果。
+ */
+public class MultiModuleRunner {
+    public static final String MODULES_DIRECTORY = "modules";
+
+    private final AnalyzerOptions options;
+    private final List<ProjectModule> modules;
+    private final int parallelism;
+    private final Set<ProjectModule> failedModules = ConcurrentHashMap.newKeySet();
+    // 测试 -> 合并了其结果的模块名，用于发现跨模块重名的测试
+    private final Map<String, String> testModules = new HashMap<>();
+    private int duplicateTests;
+
+    public MultiModuleRunner(AnalyzerOptions options, List<ProjectModule> modules) {
+        this.options = options;
+        this.modules = modules;
+        // 同时运行的模块数，默认按 CPU 核数；--workers 传给每个模块的子进程
+        this.parallelism = options.moduleParallelism > 0 ?
+                options.moduleParallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * 运行所有模块并把各模块报告中的结果合并到 result；失败的模块不参与合并，见 {@link #getFailedModules()}。
+     */
+    public CoverageResult collectCoverage(CoverageResult result) throws InterruptedException, IOException {
+        // 测试类较多的模块先启动，缩短整体耗时
+        Map<ProjectModule, Long> sizes = new HashMap<>();
+        for (ProjectModule module : modules) {
+            sizes.put(module, estimateSize(module));
+        }
+        List<ProjectModule> ordered = new ArrayList<>(modules);
+        ordered.sort(Comparator.comparing(sizes::get).reversed());
+
+        int count = Math.max(1, Math.min(parallelism, ordered.size()));
+        Log.info("Analyzing " + ordered.size() + " modules, " + count + " at a time");
+        ExecutorService executor = Executors.newFixedThreadPool(count);
+        Map<ProjectModule, Future<?>> futures = new HashMap<>();
+        for (ProjectModule module : ordered) {
+            futures.put(module, executor.submit(() -> runModule(module)));
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        // runModule 只处理 I/O 异常，其余异常在这里记为模块失败
+        for (Map.Entry<ProjectModule, Future<?>> entry : futures.entrySet()) {
+            try {
+                entry.getValue().get();
+            } catch (ExecutionException e) {
+                Log.error("Failed to analyze module " + entry.getKey().getName() + ": " + e.getCause(), e.getCause());
+                failedModules.add(entry.getKey());
+                PipelineMetrics.increment("module_failures");
+            }
+        }
+
+        // 按发现顺序合并，报告中的测试顺序与调度顺序无关
+        for (ProjectModule module : modules) {
+            mergeModule(module, result);
+        }
+        if (duplicateTests > 0) {
+            Log.warn(duplicateTests + " tests exist in more than one module, only the first module's result is kept");
+            PipelineMetrics.add("duplicate_tests", duplicateTests);
+        }
+        if (options.lineGranularity) {
+            mergeLineCoverage();
+        }
+        return result;
+    }
+
+    public Set<ProjectModule> getFailedModules() {
+        return failedModules;
+    }
+
+    public static Path moduleOutputPath(Path outputPath, ProjectModule module) {
+        return outputPath.resolve(MODULES_DIRECTORY).resolve(".".equals(module.getName()) ? "root" : module.getName());
+    }
+
+    private void runModule(ProjectModule module) {
+        long start = PipelineMetrics.start();
+        try {
+            Files.createDirectories(moduleOutputPath(options.outputPath, module));
+            Process process = new ProcessBuilder(buildCommand(module))
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            process.getOutputStream().close();
+            try (BufferedReader output = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = output.readLine()) != null) {
+                    Log.info("[" + module.getName() + "] " + line);
+                }
+            }
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                Log.warn("Module " + module.getName() + " failed with exit code " + exitCode);
+                failedModules.add(module);
+                PipelineMetrics.increment("module_failures");
+            }
+        } catch (IOException e) {
+            Log.warn("Failed to analyze module " + module.getName() + ": " + e.getMessage());
+            failedModules.add(module);
+            PipelineMetrics.increment("module_failures");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        PipelineMetrics.stop("module_run", start);
+    }
+
+    private List<String> buildCommand(ProjectModule module) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+
+        // 子进程沿用父进程的 JaCoCo 代理参数
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (argument.startsWith("-javaagent:")) {
+                command.add(argument);
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        // 模块目录本身可能也声明了子模块（如带代码的 Gradle 根项目），子进程不再展开
+        command.add("--single-module");
+
+        command.add("--log-level");
+        command.add(Log.getLevel().name());
+        if (options.workers > 1) {
+            command.add("--workers");
+            command.add(String.valueOf(options.workers));
+        }
+        if (options.batch) {
+            command.add("--batch");
+        }
+        if (options.platform) {
+            command.add("--platform");
+        }
+        if (options.offline) {
+            command.add("--offline");
+        }
+        if (options.lineGranularity) {
+            command.add("--granularity");
+            command.add("line");
+        }
+        if (options.resume) {
+            command.add("--resume");
+        }
+        if (!options.history) {
+            command.add("--no-history");
+        }
+        if (options.stream) {
+            command.add("--stream");
+        }
+        if (options.memoryBudgetMb > 0) {
+            command.add("--memory-budget");
+            command.add(String.valueOf(options.memoryBudgetMb));
+        }
+        if (options.shard != null) {
+            command.add("--shard");
+            command.add(options.shard.toString());
+        }
+        if (options.changedSince != null) {
+            command.add("--changed-since");
+            command.add(moduleOutputPath(options.changedSince.toAbsolutePath(), module).toString());
+        }
+        List<Path> moduleClasspath = moduleClasspath(module);
+        if (!moduleClasspath.isEmpty()) {
+            command.add("--module-classpath");
+            command.add(AnalyzerOptions.joinClasspath(moduleClasspath));
+        }
+
+        command.add(module.getPath().toString());
+        command.add(moduleOutputPath(options.outputPath.toAbsolutePath(), module).toString());
+        if (options.rulesetPath != null) {
+            command.add(options.rulesetPath.toAbsolutePath().toString());
+        }
+        return command;
+    }
+
+    /**
+     * 依赖模块（含传递依赖）中已编译的 classes 目录。
+     */
+    static List<Path> moduleClasspath(ProjectModule module) {
+        List<Path> classpath = new ArrayList<>();
+        for (ProjectModule dependency : ModuleDiscovery.transitiveDependencies(module)) {
+            // 未编译的模块没有 classes 目录，不能把模块目录本身放进类路径
+            Path classesDir = CoverageRunner.classesDirectoryOf(dependency.getPath(), false);
+            if (classesDir != null) {
+                classpath.add(classesDir);
+            }
+        }
+        return classpath;
+    }
+
+    private void mergeModule(ProjectModule module, CoverageResult result) {
+        Path moduleOutput = moduleOutputPath(options.outputPath, module);
+        Path report = moduleOutput.resolve("coverage_report.json");
+        // 失败模块的目录中可能还留有上一次的报告，不能合并
+        if (failedModules.contains(module) || !Files.exists(report)) {
+            Log.warn("No coverage report for module " + module.getName());
+            return;
+        }
+        try {
+            ReportMerger.readCoverage(report, new CoverageListener() {
+                @Override
+                public void onCoverage(String testMethod, List<String> coveredMethods) {
+                    if (claim(testMethod, module)) {
+                        result.addCoverage(testMethod, coveredMethods);
+                    }
+                }
+
+                @Override
+                public void onIncomplete(String testMethod, String reason) {
+                    if (claim(testMethod, module)) {
+                        result.addIncomplete(testMethod, reason);
+                    }
+                }
+            });
+            Path metrics = moduleOutput.resolve(PipelineMetrics.JSON_FILE_NAME);
+            if (Files.exists(metrics)) {
+                try (Reader reader = Files.newBufferedReader(metrics, StandardCharsets.UTF_8)) {
+                    PipelineMetrics.merge(new Gson().fromJson(reader, JsonObject.class));
+                }
+            }
+        } catch (IOException e) {
+            Log.warn("Failed to read report of module " + module.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 第一个合并该测试的模块取得它；之后的模块中同名的测试被跳过并告警。
+     */
+    private boolean claim(String testMethod, ProjectModule module) {
+        String owner = testModules.putIfAbsent(testMethod, module.getName());
+        if (owner == null || owner.equals(module.getName())) {
+            return true;
+        }
+        duplicateTests++;
+        Log.warn("Test " + testMethod + " of module " + module.getName() +
+                " has the same name as a test of module " + owner + ", keeping the result of " + owner);
+        return false;
+    }
+
+    /**
+     * 各模块的 coverage_lines.jsonl 每行一个测试，按模块顺序拼接；有重名的测试时
+     * 逐行过滤，只保留取得该测试的模块的行。
+     */
+    private void mergeLineCoverage() throws IOException {
+        Path merged = options.outputPath.resolve(LineCoverageWriter.FILE_NAME);
+        Gson gson = new Gson();
+        try (OutputStream out = Files.newOutputStream(merged)) {
+            for (ProjectModule module : modules) {
+                Path lines = moduleOutputPath(options.outputPath, module).resolve(LineCoverageWriter.FILE_NAME);
+                if (failedModules.contains(module) || !Files.exists(lines)) {
+                    continue;
+                }
+                if (duplicateTests == 0) {
+                    Files.copy(lines, out);
+                    continue;
+                }
+                try (BufferedReader reader = Files.newBufferedReader(lines, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        JsonObject row;
+                        try {
+                            row = gson.fromJson(line, JsonObject.class);
+                        } catch (JsonParseException e) {
+                            continue;
+                        }
+                        if (row != null && row.has("test") &&
+                                module.getName().equals(testModules.get(row.get("test").getAsString()))) {
+                            out.write(line.getBytes(StandardCharsets.UTF_8));
+                            out.write('\n');
+                        }
+                    }
+                }
+            }
+        }
+        Log.info("Line coverage saved to: " + merged);
+    }
+
+    /**
+     * 以测试类文件数估计模块的运行时间。
+     */
+    private static long estimateSize(ProjectModule module) {
+        Path testClassesDir = module.getPath().resolve("target").resolve("test-classes");
+        if (!Files.isDirectory(testClassesDir)) {
+            testClassesDir = module.getPath().resolve("build").resolve("classes").resolve("java").resolve("test");
+        }
+        if (!Files.isDirectory(testClassesDir)) {
+            return 0;
+        }
+        try (Stream<Path> paths = Files.walk(testClassesDir)) {
+            return paths.filter(path -> path.toString().endsWith(".class")).count();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
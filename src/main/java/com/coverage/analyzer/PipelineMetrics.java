@@ -0,0 +1,172 @@
+package com.coverage.analyzer;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 整个流水线的阶段耗时和计数器，进程内全局共享、线程安全。
+ * 运行结束后在报告旁写出 JSON 和 Prometheus 文本格式两份指标文件；
+ * 子 JVM 的指标以 JSON 快照形式回传并合并到父进程。
+ */
+public final class PipelineMetrics {
+    public static final String JSON_FILE_NAME = "coverage_metrics.json";
+    public static final String PROMETHEUS_FILE_NAME = "coverage_metrics.prom";
+
+    private static final Map<String, PhaseTimer> phases = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    private PipelineMetrics() {
+    }
+
+    /**
+     * 开始计时，返回值传给 {@link #stop(String, long)}。
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    public static void stop(String phase, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        record(phase, 1, elapsed, elapsed);
+    }
+
+    public static void increment(String counter) {
+        add(counter, 1);
+    }
+
+    public static void add(String counter, long delta) {
+        counters.computeIfAbsent(counter, k -> new LongAdder()).add(delta);
+    }
+
+    private static void record(String phase, long count, long totalNanos, long maxNanos) {
+        PhaseTimer timer = phases.computeIfAbsent(phase, k -> new PhaseTimer());
+        timer.count.add(count);
+        timer.totalNanos.add(totalNanos);
+        timer.maxNanos.accumulate(maxNanos);
+    }
+
+    /**
+     * 当前指标的 JSON 快照，阶段和计数器按名称排序。
+     */
+    public static JsonObject snapshot() {
+        JsonObject phaseJson = new JsonObject();
+        for (Map.Entry<String, PhaseTimer> entry : new TreeMap<>(phases).entrySet()) {
+            PhaseTimer timer = entry.getValue();
+            JsonObject json = new JsonObject();
+            json.addProperty("count", timer.count.sum());
+            json.addProperty("total_nanos", timer.totalNanos.sum());
+            json.addProperty("max_nanos", timer.maxNanos.get());
+            json.addProperty("total_seconds", seconds(timer.totalNanos.sum()));
+            phaseJson.add(entry.getKey(), json);
+        }
+
+        JsonObject counterJson = new JsonObject();
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            counterJson.addProperty(entry.getKey(), entry.getValue().sum());
+        }
+
+        JsonObject snapshot = new JsonObject();
+        snapshot.add("phases", phaseJson);
+        snapshot.add("counters", counterJson);
+        return snapshot;
+    }
+
+    /**
+     * 合并其他进程（如工作子进程）的指标快照。
+     */
+    public static void merge(JsonObject snapshot) {
+        if (snapshot.has("phases")) {
+            for (Map.Entry<String, JsonElement> entry : snapshot.getAsJsonObject("phases").entrySet()) {
+                JsonObject json = entry.getValue().getAsJsonObject();
+                record(entry.getKey(), json.get("count").getAsLong(),
+                        json.get("total_nanos").getAsLong(), json.get("max_nanos").getAsLong());
+            }
+        }
+        if (snapshot.has("counters")) {
+            for (Map.Entry<String, JsonElement> entry : snapshot.getAsJsonObject("counters").entrySet()) {
+                add(entry.getKey(), entry.getValue().getAsLong());
+            }
+        }
+    }
+
+    /**
+     * 在输出目录写出 coverage_metrics.json 和 coverage_metrics.prom。
+     */
+    public static void export(Path outputPath) throws IOException {
+        Files.createDirectories(outputPath);
+        JsonObject snapshot = snapshot();
+
+        Path jsonFile = outputPath.resolve(JSON_FILE_NAME);
+        try (Writer writer = Files.newBufferedWriter(jsonFile, StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(snapshot, writer);
+        }
+
+        Path prometheusFile = outputPath.resolve(PROMETHEUS_FILE_NAME);
+        try (Writer writer = Files.newBufferedWriter(prometheusFile, StandardCharsets.UTF_8)) {
+            writer.write(toPrometheus(snapshot));
+        }
+        Log.info("Metrics saved to: " + jsonFile + ", " + prometheusFile);
+    }
+
+    static String toPrometheus(JsonObject snapshot) {
+        StringBuilder text = new StringBuilder();
+        JsonObject phaseJson = snapshot.getAsJsonObject("phases");
+
+        text.append("# HELP coverage_phase_seconds_total Total time spent in each pipeline phase.\n");
+        text.append("# TYPE coverage_phase_seconds_total counter\n");
+        for (Map.Entry<String, JsonElement> entry : phaseJson.entrySet()) {
+            long nanos = entry.getValue().getAsJsonObject().get("total_nanos").getAsLong();
+            text.append("coverage_phase_seconds_total{phase=\"").append(entry.getKey()).append("\"} ")
+                    .append(format(seconds(nanos))).append('\n');
+        }
+
+        text.append("# HELP coverage_phase_count_total Number of times each pipeline phase ran.\n");
+        text.append("# TYPE coverage_phase_count_total counter\n");
+        for (Map.Entry<String, JsonElement> entry : phaseJson.entrySet()) {
+            text.append("coverage_phase_count_total{phase=\"").append(entry.getKey()).append("\"} ")
+                    .append(entry.getValue().getAsJsonObject().get("count").getAsLong()).append('\n');
+        }
+
+        text.append("# HELP coverage_phase_seconds_max Longest single run of each pipeline phase.\n");
+        text.append("# TYPE coverage_phase_seconds_max gauge\n");
+        for (Map.Entry<String, JsonElement> entry : phaseJson.entrySet()) {
+            long nanos = entry.getValue().getAsJsonObject().get("max_nanos").getAsLong();
+            text.append("coverage_phase_seconds_max{phase=\"").append(entry.getKey()).append("\"} ")
+                    .append(format(seconds(nanos))).append('\n');
+        }
+
+        for (Map.Entry<String, JsonElement> entry : snapshot.getAsJsonObject("counters").entrySet()) {
+            String name = "coverage_" + entry.getKey() + "_total";
+            text.append("# TYPE ").append(name).append(" counter\n");
+            text.append(name).append(' ').append(entry.getValue().getAsLong()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.9f", value);
+    }
+
+    private static class PhaseTimer {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    }
+}
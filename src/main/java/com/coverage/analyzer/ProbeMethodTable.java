@@ -0,0 +1,163 @@
+package com.coverage.analyzer;
+
+import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.jacoco.core.internal.flow.ClassProbesVisitor;
+import org.jacoco.core.internal.flow.IFrame;
+import org.jacoco.core.internal.flow.LabelInfo;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Label;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单个类的探针索引到所属方法的查找表。
+ * 探针编号与 JaCoCo 插桩时的编号一致，因此可以直接扫描 ExecutionData 中的 boolean[] 得到覆盖的方法，
+ * 无需再对每个测试运行 JaCoCo Analyzer。
+ */
+public class ProbeMethodTable {
+    private static final int NO_METHOD = -1;
+
+    private final String className;
+    private final String[] methodIds;
+    private final int[] probeToMethod;
+
+    private ProbeMethodTable(String className, String[] methodIds, int[] probeToMethod) {
+        this.className = className;
+        this.methodIds = methodIds;
+        this.probeToMethod = probeToMethod;
+    }
+
+    public static ProbeMethodTable build(byte[] classBytes) {
+        ClassReader reader = InstrSupport.classReaderFor(classBytes);
+        TableBuilder builder = new TableBuilder();
+        reader.accept(new ClassProbesAdapter(builder, false), 0);
+        return builder.toTable();
+    }
+
+    /**
+     * 将命中的探针所属方法追加到 coveredMethods，同一方法只追加一次。
+     *
+     * @return 探针数量与表不一致时返回 false（类字节与执行数据不匹配）
+     */
+    public boolean collectCoveredMethods(boolean[] probes, List<String> coveredMethods) {
+        if (probes.length != probeToMethod.length) {
+            return false;
+        }
+        boolean[] seen = new boolean[methodIds.length];
+        for (int i = 0; i < probes.length; i++) {
+            if (!probes[i]) {
+                continue;
+            }
+            int method = probeToMethod[i];
+            if (method != NO_METHOD && !seen[method]) {
+                seen[method] = true;
+                coveredMethods.add(methodIds[method]);
+            }
+        }
+        return true;
+    }
+
+    public String getClassName() { return className; }
+    public int getProbeCount() { return probeToMethod.length; }
+    public int getMethodCount() { return methodIds.length; }
+
+    private static class TableBuilder extends ClassProbesVisitor {
+        private String className;
+        private final List<String> methodIds = new ArrayList<>();
+        private final Map<String, Integer> methodIndex = new HashMap<>();
+        private final Map<Integer, Integer> probeOwners = new HashMap<>();
+        private int probeCount;
+
+        @Override
+        public void visit(int version, int access, String name, String signature,
+                          String superName, String[] interfaces) {
+            this.className = name.replace('/', '.');
+            super.visit(version, access, name, signature, superName, interfaces);
+        }
+
+        @Override
+        public MethodProbesVisitor visitMethod(int access, String name, String descriptor,
+                                               String signature, String[] exceptions) {
+            // 与行号映射保持一致，跳过特殊方法；返回 null 时探针仍会被编号
+            if (!MethodCoverageMapper.isMappedMethod(name)) {
+                return null;
+            }
+
+            String methodId = MethodCoverageMapper.methodId(className, name, descriptor);
+            Integer index = methodIndex.get(methodId);
+            if (index == null) {
+                index = methodIds.size();
+                methodIds.add(methodId);
+                methodIndex.put(methodId, index);
+            }
+            return new MethodProbeRecorder(index);
+        }
+
+        @Override
+        public void visitTotalProbeCount(int count) {
+            this.probeCount = count;
+        }
+
+        ProbeMethodTable toTable() {
+            int[] probeToMethod = new int[probeCount];
+            Arrays.fill(probeToMethod, NO_METHOD);
+            for (Map.Entry<Integer, Integer> entry : probeOwners.entrySet()) {
+                probeToMethod[entry.getKey()] = entry.getValue();
+            }
+            return new ProbeMethodTable(className, methodIds.toArray(new String[0]), probeToMethod);
+        }
+
+        private class MethodProbeRecorder extends MethodProbesVisitor {
+            private final int methodIndex;
+
+            MethodProbeRecorder(int methodIndex) {
+                this.methodIndex = methodIndex;
+            }
+
+            @Override
+            public void visitProbe(int probeId) {
+                probeOwners.put(probeId, methodIndex);
+            }
+
+            @Override
+            public void visitJumpInsnWithProbe(int opcode, Label label, int probeId, IFrame frame) {
+                probeOwners.put(probeId, methodIndex);
+            }
+
+            @Override
+            public void visitInsnWithProbe(int opcode, int probeId) {
+                probeOwners.put(probeId, methodIndex);
+            }
+
+            @Override
+            public void visitTableSwitchInsnWithProbes(int min, int max, Label dflt, Label[] labels, IFrame frame) {
+                visitSwitchProbes(dflt, labels);
+            }
+
+            @Override
+            public void visitLookupSwitchInsnWithProbes(Label dflt, int[] keys, Label[] labels, IFrame frame) {
+                visitSwitchProbes(dflt, labels);
+            }
+
+            private void visitSwitchProbes(Label dflt, Label[] labels) {
+                recordLabelProbe(dflt);
+                for (Label label : labels) {
+                    recordLabelProbe(label);
+                }
+            }
+
+            private void recordLabelProbe(Label label) {
+                int probeId = LabelInfo.getProbeId(label);
+                if (probeId != LabelInfo.NO_PROBE) {
+                    probeOwners.put(probeId, methodIndex);
+                }
+            }
+        }
+    }
+}
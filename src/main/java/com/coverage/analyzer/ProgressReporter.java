@@ -0,0 +1,46 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.CoverageListener;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 安静模式下的进度输出：每完成约 5% 的测试或每隔 30 秒打印一行进度。
+ */
+public class ProgressReporter implements CoverageListener {
+    private static final long INTERVAL_MS = 30_000;
+
+    private final int totalTests;
+    private final int step;
+    private final long startTime = System.currentTimeMillis();
+    private long lastReport = startTime;
+    private int completed;
+
+    public ProgressReporter(int totalTests) {
+        this.totalTests = totalTests;
+        this.step = Math.max(1, totalTests / 20);
+    }
+
+    @Override
+    public synchronized void onCoverage(String testMethod, List<String> coveredMethods) {
+        advance();
+    }
+
+    @Override
+    public synchronized void onIncomplete(String testMethod, String reason) {
+        advance();
+    }
+
+    private void advance() {
+        completed++;
+        long now = System.currentTimeMillis();
+        if (completed % step != 0 && completed != totalTests && now - lastReport < INTERVAL_MS) {
+            return;
+        }
+        lastReport = now;
+        double percent = totalTests > 0 ? completed * 100.0 / totalTests : 100.0;
+        Log.info(String.format(Locale.ROOT, "Progress: %d/%d tests (%.1f%%), %ds elapsed",
+                completed, totalTests, percent, (now - startTime) / 1000));
+    }
+}
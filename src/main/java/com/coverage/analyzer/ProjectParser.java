@@ -1,5 +1,6 @@
 package com.coverage.analyzer;
 
+import com.coverage.analyzer.models.ProjectModel;
 import com.coverage.analyzer.models.ProjectStats;
 import com.github.javaparser.JavaParser;
 import com.github.javaparser.ParseResult;
@@ -12,8 +13,13 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ProjectParser {
+    // JavaParser 实例不是线程安全的，每个线程复用自己的实例
+    private static final ThreadLocal<JavaParser> PARSERS = ThreadLocal.withInitial(JavaParser::new);
+
     private final Path projectPath;
     private final ProjectStats stats = new ProjectStats();
     private final List<String> testMethods = new ArrayList<>();
@@ -23,23 +29,40 @@ public class ProjectParser {
         stats.setLocation(projectPath.toString());
     }
 
-    public ProjectStats parse() throws IOException {
-        Files.walk(projectPath)
-                .filter(path -> path.toString().endsWith(".java"))
-                .forEach(this::processJavaFile);
+    public ProjectModel parse() throws IOException {
+        long start = PipelineMetrics.start();
+        List<Path> javaFiles;
+        try (Stream<Path> paths = Files.walk(projectPath)) {
+            javaFiles = paths.filter(path -> path.toString().endsWith(".java"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        // 并行解析，按文件顺序合并结果以保证测试列表顺序稳定
+        List<FileSummary> summaries = javaFiles.parallelStream()
+                .map(this::processJavaFile)
+                .collect(Collectors.toList());
+        for (FileSummary summary : summaries) {
+            stats.incrementJavaFiles();
+            stats.addClasses(summary.numClasses);
+            stats.addMethods(summary.numMethods);
+            testMethods.addAll(summary.testMethods);
+        }
 
         stats.setNumTestMethods(testMethods.size());
-        return stats;
+        PipelineMetrics.stop("parse", start);
+        PipelineMetrics.add("java_files_parsed", javaFiles.size());
+        return new ProjectModel(projectPath, stats, testMethods);
     }
 
-    private void processJavaFile(Path javaFile) {
-        stats.incrementJavaFiles();
+    private FileSummary processJavaFile(Path javaFile) {
+        FileSummary summary = new FileSummary();
 
         try {
-            ParseResult<CompilationUnit> parseResult = new JavaParser().parse(javaFile);
+            ParseResult<CompilationUnit> parseResult = PARSERS.get().parse(javaFile);
             if (!parseResult.isSuccessful()) {
-                System.err.println("Parse errors in file: " + javaFile);
-                return;
+                Log.warn("Parse errors in file: " + javaFile);
+                return summary;
             }
 
             parseResult.getResult().ifPresent(cu -> {
@@ -49,26 +72,27 @@ public class ProjectParser {
                         return;
                     }
 
-                    stats.incrementClasses();
+                    summary.numClasses++;
                     processClass(classDecl, cu.getPackageDeclaration()
                             .map(pd -> pd.getNameAsString())
-                            .orElse(""));
+                            .orElse(""), summary);
                 });
             });
         } catch (IOException e) {
-            System.err.println("Error parsing file: " + javaFile);
+            Log.warn("Error parsing file: " + javaFile, e);
         }
+        return summary;
     }
 
-    private void processClass(ClassOrInterfaceDeclaration classDecl, String packageName) {
+    private void processClass(ClassOrInterfaceDeclaration classDecl, String packageName, FileSummary summary) {
         String className = packageName.isEmpty() ?
                 classDecl.getNameAsString() :
                 packageName + "." + classDecl.getNameAsString();
 
         classDecl.getMethods().forEach(method -> {
-            stats.incrementMethods();
+            summary.numMethods++;
             if (isTestMethod(method)) {
-                testMethods.add(className + "#" + method.getNameAsString());
+                summary.testMethods.add(className + "#" + method.getNameAsString());
             }
         });
     }
@@ -85,4 +109,10 @@ public class ProjectParser {
     public List<String> getTestMethods() {
         return testMethods;
     }
-}
\ No newline at end of file
+
+    private static class FileSummary {
+        int numClasses;
+        int numMethods;
+        final List<String> testMethods = new ArrayList<>();
+    }
+}
@@ -0,0 +1,206 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.CoverageListener;
+import com.coverage.analyzer.models.ProjectStats;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * 合并多个分片的覆盖报告（coverage_report.json 或 coverage_report.bin）为一个 coverage_report.json。
+ * 逐条读取、逐条写出，内存中只保留已写出的测试标识用于去重。
+ * 没有正常结束的测试在所有报告读完后写出，其他报告中有结果的以结果为准。
+ */
+public class ReportMerger {
+    private final Path outputPath;
+    private final Set<String> mergedTests = new HashSet<>();
+    private final Map<String, String> incompleteTests = new LinkedHashMap<>();
+    private StreamingResultExporter writer;
+
+    public ReportMerger(Path outputPath) {
+        this.outputPath = outputPath;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java -cp coverage-analyzer.jar com.coverage.analyzer.ReportMerger <output-path> <report>...");
+            System.exit(1);
+        }
+
+        Path outputPath = Paths.get(args[0]);
+        List<Path> reports = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            reports.add(Paths.get(args[i]));
+        }
+
+        try {
+            new ReportMerger(outputPath).merge(reports);
+        } catch (Exception e) {
+            Log.error("Error merging reports: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    public void merge(List<Path> reports) throws IOException {
+        Path target = outputPath.resolve("coverage_report.json").toAbsolutePath().normalize();
+        for (Path report : reports) {
+            if (report.toAbsolutePath().normalize().equals(target)) {
+                throw new IOException("Output would overwrite input report: " + report);
+            }
+        }
+
+        try {
+            for (Path report : reports) {
+                Log.info("Merging report: " + report);
+                if (report.toString().endsWith(".bin")) {
+                    mergeBinary(report);
+                } else {
+                    mergeJson(report);
+                }
+            }
+            if (writer != null) {
+                for (Map.Entry<String, String> entry : incompleteTests.entrySet()) {
+                    if (!mergedTests.contains(entry.getKey())) {
+                        writer.onIncomplete(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+        Log.info("Merged " + mergedTests.size() + " tests from " + reports.size() + " reports");
+    }
+
+    private void mergeBinary(Path report) throws IOException {
+        BinaryCoverageReport binaryReport = BinaryCoverageReport.open(report);
+        openWriter(binaryReport.getStats());
+        List<String> testMethods = binaryReport.getTestMethods();
+        for (int i = 0; i < testMethods.size(); i++) {
+            write(testMethods.get(i), binaryReport.getCoveredMethods(i));
+        }
+    }
+
+    private void mergeJson(Path report) throws IOException {
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(report, StandardCharsets.UTF_8))) {
+            ProjectStats stats = new ProjectStats();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("location".equals(name) && reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                } else if ("location".equals(name)) {
+                    stats.setLocation(reader.nextString());
+                } else if ("stat_of_repository".equals(name)) {
+                    readStats(reader, stats);
+                } else if ("test_coverage_against_methods".equals(name)) {
+                    // 统计信息位于覆盖数据之前，第一个报告的统计信息作为合并结果的头部
+                    openWriter(stats);
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String testMethod = reader.nextName();
+                        List<String> coveredMethods = new ArrayList<>();
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            coveredMethods.add(reader.nextString());
+                        }
+                        reader.endArray();
+                        write(testMethod, coveredMethods);
+                    }
+                    reader.endObject();
+                } else if ("incomplete_tests".equals(name)) {
+                    readIncomplete(reader, incompleteTests::putIfAbsent);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+    }
+
+    /**
+     * 逐条读取 JSON 报告中的覆盖数据和没有正常结束的测试交给监听器，忽略统计信息。
+     */
+    static void readCoverage(Path report, CoverageListener listener) throws IOException {
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(report, StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("incomplete_tests".equals(name)) {
+                    readIncomplete(reader, listener::onIncomplete);
+                    continue;
+                }
+                if (!"test_coverage_against_methods".equals(name)) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String testMethod = reader.nextName();
+                    List<String> coveredMethods = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        coveredMethods.add(reader.nextString());
+                    }
+                    reader.endArray();
+                    listener.onCoverage(testMethod, coveredMethods);
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+        }
+    }
+
+    private static void readIncomplete(JsonReader reader, BiConsumer<String, String> consumer) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            consumer.accept(reader.nextName(), reader.nextString());
+        }
+        reader.endObject();
+    }
+
+    private static void readStats(JsonReader reader, ProjectStats stats) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("num_java_files".equals(name)) {
+                stats.addJavaFiles(reader.nextInt());
+            } else if ("num_classes".equals(name)) {
+                stats.addClasses(reader.nextInt());
+            } else if ("num_methods".equals(name)) {
+                stats.addMethods(reader.nextInt());
+            } else if ("num_test_methods".equals(name)) {
+                stats.setNumTestMethods(reader.nextInt());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void openWriter(ProjectStats stats) throws IOException {
+        if (writer == null) {
+            writer = new StreamingResultExporter(outputPath, stats, stats.getNumTestMethods());
+        }
+    }
+
+    private void write(String testMethod, List<String> coveredMethods) {
+        // 分片之间不应重叠，重复出现的测试只保留第一次的结果
+        if (mergedTests.add(testMethod)) {
+            writer.onCoverage(testMethod, coveredMethods);
+        }
+    }
+}
@@ -1,54 +1,35 @@
 package com.coverage.analyzer;
 
 import com.coverage.analyzer.models.CoverageResult;
-import com.coverage.analyzer.models.ProjectStats;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonObject;
+import com.coverage.analyzer.models.ProjectModel;
 
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.List;
 import java.util.Map;
 
 public class ResultExporter {
     private final Path outputPath;
-    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
 
     public ResultExporter(Path outputPath) {
         this.outputPath = outputPath;
     }
 
-    public void export(Path projectPath, ProjectStats stats, CoverageResult coverageResult) throws IOException {
-        Path filePath = outputPath.resolve("coverage_report.json");
-        try (FileWriter writer = new FileWriter(filePath.toFile())) {
-            JsonObject root = new JsonObject();
-            root.addProperty("location", stats.getLocation());
-
-            JsonObject statsObj = new JsonObject();
-            statsObj.addProperty("num_java_files", stats.getNumJavaFiles());
-            statsObj.addProperty("num_classes", stats.getNumClasses());
-            statsObj.addProperty("num_methods", stats.getNumMethods());
-            // 使用报告中的测试方法数量
-            ProjectParser parser = new ProjectParser(projectPath);
-            try {
-                parser.parse();
-            } catch (Exception e) {
-                e.printStackTrace();
+    public void export(ProjectModel model, CoverageResult coverageResult) throws IOException {
+        // 逐个测试解码位图写出，不在内存中构建完整的 JSON 树
+        try (StreamingResultExporter writer = new StreamingResultExporter(outputPath, model.getStats(),
+                model.getTestMethods().size())) {
+            for (String testMethod : coverageResult.getTestMethods()) {
+                writer.onCoverage(testMethod, coverageResult.getCoveredMethods(testMethod));
             }
-            List<String> testMethods = parser.getTestMethods();
-            statsObj.addProperty("num_test_methods", testMethods.size());
-            root.add("stat_of_repository", statsObj);
-
-            JsonObject coverageObj = new JsonObject();
-            for (Map.Entry<String, List<String>> entry : coverageResult.getTestCoverageAgainstMethods().entrySet()) {
-                coverageObj.add(entry.getKey(), gson.toJsonTree(entry.getValue()));
+            for (Map.Entry<String, String> entry : coverageResult.getIncompleteTests().entrySet()) {
+                writer.onIncomplete(entry.getKey(), entry.getValue());
             }
-            root.add("test_coverage_against_methods", coverageObj);
-
-            gson.toJson(root, writer);
-            System.out.println("Coverage report saved to: " + filePath);
         }
+        // 方法到测试的倒排索引，供变更影响查询直接使用
+        ReverseCoverageIndex.write(outputPath.resolve(ReverseCoverageIndex.FILE_NAME), coverageResult);
+    }
+
+    public void exportBinary(ProjectModel model, CoverageResult coverageResult) throws IOException {
+        BinaryCoverageReport.write(outputPath.resolve(BinaryCoverageReport.FILE_NAME), model, coverageResult);
     }
-}
\ No newline at end of file
+}
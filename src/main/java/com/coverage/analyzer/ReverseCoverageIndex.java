@@ -0,0 +1,295 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.CoverageResult;
+import com.coverage.analyzer.models.MethodDictionary;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * 方法到测试的倒排索引 coverage_index.bin，与覆盖报告一起生成。
+ *
+ * <pre>
+ * int    magic "COVI", int version
+ * int    测试数, int 方法数
+ * int[]  各测试标识的文件偏移（下标即测试序号，与报告中的测试顺序一致）
+ * { int 方法标识偏移, int 倒排表偏移 }[]  按方法标识排序
+ * string[] 测试标识和方法标识（int 长度 + UTF-8）
+ * 倒排表：varint 测试数，varint 测试序号增量（升序）
+ * </pre>
+ *
+ * 查询时内存映射整个文件，二分查找方法后只解码该方法的倒排表，开销与结果大小成正比，与报告大小无关。
+ */
+public class ReverseCoverageIndex {
+    public static final String FILE_NAME = "coverage_index.bin";
+
+    private static final int MAGIC = 0x434F5649;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private final ByteBuffer buffer;
+    private final int testCount;
+    private final int methodCount;
+    private final int methodTableStart;
+
+    private ReverseCoverageIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a coverage index");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported coverage index version: " + version);
+        }
+        testCount = buffer.getInt(8);
+        methodCount = buffer.getInt(12);
+        methodTableStart = HEADER_SIZE + testCount * 4;
+    }
+
+    public static ReverseCoverageIndex open(Path indexFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Coverage index too large to map: " + indexFile);
+            }
+            return new ReverseCoverageIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * 倒排覆盖结果并写出索引。倒排表先以位图构建，再按方法标识排序后顺序写出，不在内存中保留编码结果。
+     */
+    public static void write(Path indexFile, CoverageResult coverageResult) throws IOException {
+        MethodDictionary dictionary = coverageResult.getMethodDictionary();
+        List<String> testMethods = new ArrayList<>(coverageResult.getTestMethods());
+        int methodCount = dictionary.size();
+
+        RoaringBitmap[] postings = new RoaringBitmap[methodCount];
+        for (int test = 0; test < testMethods.size(); test++) {
+            IntIterator methodIds = coverageResult.getCoveredMethodIds(testMethods.get(test)).getIntIterator();
+            while (methodIds.hasNext()) {
+                int methodId = methodIds.next();
+                if (postings[methodId] == null) {
+                    postings[methodId] = new RoaringBitmap();
+                }
+                postings[methodId].add(test);
+            }
+        }
+
+        String[] methods = new String[methodCount];
+        Integer[] order = new Integer[methodCount];
+        for (int id = 0; id < methodCount; id++) {
+            methods[id] = dictionary.methodOf(id);
+            order[id] = id;
+        }
+        Arrays.sort(order, (a, b) -> methods[a].compareTo(methods[b]));
+
+        // 先计算各段大小以确定偏移，再一次性顺序写出
+        long offset = HEADER_SIZE + testMethods.size() * 4L + methodCount * 8L;
+        int[] testOffsets = new int[testMethods.size()];
+        for (int test = 0; test < testMethods.size(); test++) {
+            testOffsets[test] = checkedOffset(offset);
+            offset += 4 + utf8Length(testMethods.get(test));
+        }
+        int[] methodOffsets = new int[methodCount];
+        for (int i = 0; i < methodCount; i++) {
+            methodOffsets[i] = checkedOffset(offset);
+            offset += 4 + utf8Length(methods[order[i]]);
+        }
+        int[] postingOffsets = new int[methodCount];
+        for (int i = 0; i < methodCount; i++) {
+            postingOffsets[i] = checkedOffset(offset);
+            offset += postingSize(postings[order[i]]);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(testMethods.size());
+            out.writeInt(methodCount);
+            for (int testOffset : testOffsets) {
+                out.writeInt(testOffset);
+            }
+            for (int i = 0; i < methodCount; i++) {
+                out.writeInt(methodOffsets[i]);
+                out.writeInt(postingOffsets[i]);
+            }
+            for (String testMethod : testMethods) {
+                writeString(out, testMethod);
+            }
+            for (int i = 0; i < methodCount; i++) {
+                writeString(out, methods[order[i]]);
+            }
+            for (int i = 0; i < methodCount; i++) {
+                writePosting(out, postings[order[i]]);
+            }
+        }
+        Log.info("Coverage index saved to: " + indexFile);
+    }
+
+    public int getTestCount() {
+        return testCount;
+    }
+
+    public int getMethodCount() {
+        return methodCount;
+    }
+
+    /**
+     * 覆盖指定方法的测试。方法标识不含描述符（如 pkg.Foo#bar）时匹配该方法的所有重载。
+     */
+    public List<String> findTests(String method) {
+        boolean allOverloads = !method.contains("(");
+        String key = allOverloads ? method + "(" : method;
+
+        List<String> tests = new ArrayList<>();
+        RoaringBitmap merged = allOverloads ? new RoaringBitmap() : null;
+        for (int i = lowerBound(key); i < methodCount; i++) {
+            String name = methodName(i);
+            if (allOverloads ? !name.startsWith(key) : !name.equals(key)) {
+                break;
+            }
+            if (allOverloads) {
+                // 多个重载的倒排表合并去重后按测试顺序输出
+                forEachTest(i, merged::add);
+            } else {
+                forEachTest(i, test -> tests.add(testName(test)));
+            }
+        }
+        if (merged != null) {
+            merged.forEach((int test) -> tests.add(testName(test)));
+        }
+        return tests;
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = methodCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (methodName(mid).compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private String methodName(int index) {
+        return readString(buffer.getInt(methodTableStart + index * 8));
+    }
+
+    private String testName(int test) {
+        return readString(buffer.getInt(HEADER_SIZE + test * 4));
+    }
+
+    private void forEachTest(int methodIndex, IntConsumer consumer) {
+        ByteBuffer posting = buffer.duplicate();
+        posting.position(buffer.getInt(methodTableStart + methodIndex * 8 + 4));
+        int count = readVarint(posting);
+        int test = 0;
+        for (int i = 0; i < count; i++) {
+            test += readVarint(posting);
+            consumer.accept(test);
+        }
+    }
+
+    private String readString(int position) {
+        int length = buffer.getInt(position);
+        byte[] bytes = new byte[length];
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(position + 4);
+        slice.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checkedOffset(long offset) throws IOException {
+        if (offset > Integer.MAX_VALUE) {
+            throw new IOException("Coverage index exceeds 2GB");
+        }
+        return (int) offset;
+    }
+
+    private static int utf8Length(String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static long postingSize(RoaringBitmap tests) {
+        if (tests == null) {
+            return varintSize(0);
+        }
+        long size = varintSize(tests.getCardinality());
+        int previous = 0;
+        IntIterator iterator = tests.getIntIterator();
+        while (iterator.hasNext()) {
+            int test = iterator.next();
+            size += varintSize(test - previous);
+            previous = test;
+        }
+        return size;
+    }
+
+    private static void writePosting(DataOutputStream out, RoaringBitmap tests) throws IOException {
+        if (tests == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        writeVarint(out, tests.getCardinality());
+        int previous = 0;
+        IntIterator iterator = tests.getIntIterator();
+        while (iterator.hasNext()) {
+            int test = iterator.next();
+            writeVarint(out, test - previous);
+            previous = test;
+        }
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
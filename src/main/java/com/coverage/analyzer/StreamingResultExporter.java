@@ -0,0 +1,126 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.CoverageListener;
+import com.coverage.analyzer.models.ProjectModel;
+import com.coverage.analyzer.models.ProjectStats;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式写出 coverage_report.json：每个测试完成后立即追加一条记录，内存占用与测试数量无关。
+ * 每条记录先在内存中编码，再连同闭合括号在一次写入中从上一个闭合括号的位置覆盖写出，
+ * 文件中不会出现写了一半的记录，进程在运行中途被终止时文件仍是合法的 JSON。
+ * 没有正常结束的测试不写入覆盖数据，关闭时在 incomplete_tests 中列出测试和原因。
+ */
+public class StreamingResultExporter implements CoverageListener, Closeable {
+    private static final byte[] TRAILER = "\n  }\n}".getBytes(StandardCharsets.UTF_8);
+
+    private final Path filePath;
+    private final FileChannel channel;
+    // 当前记录的编码结果，写出后清空
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final JsonWriter writer;
+    // 没有正常结束的测试 -> 原因，关闭时写出
+    private final Map<String, String> incompleteTests = new LinkedHashMap<>();
+    // 已写出的完整内容的长度，即闭合括号的起始位置
+    private long position;
+
+    public StreamingResultExporter(Path outputPath, ProjectModel model) throws IOException {
+        this(outputPath, model.getStats(), model.getTestMethods().size());
+        Log.info("Streaming coverage report to: " + filePath);
+    }
+
+    /**
+     * 一次性写出完整报告时使用，如结果导出、二进制报告转换和分片合并（后两者没有测试方法列表，
+     * 测试方法数取自已有报告的统计信息）。
+     */
+    StreamingResultExporter(Path outputPath, ProjectStats stats, int numTestMethods) throws IOException {
+        this.filePath = outputPath.resolve("coverage_report.json");
+        this.channel = FileChannel.open(filePath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.writer = new JsonWriter(new OutputStreamWriter(pending, StandardCharsets.UTF_8));
+        writer.setIndent("  ");
+
+        writer.beginObject();
+        writer.name("location").value(stats.getLocation());
+
+        writer.name("stat_of_repository").beginObject();
+        writer.name("num_java_files").value(stats.getNumJavaFiles());
+        writer.name("num_classes").value(stats.getNumClasses());
+        writer.name("num_methods").value(stats.getNumMethods());
+        writer.name("num_test_methods").value(numTestMethods);
+        writer.endObject();
+
+        writer.name("test_coverage_against_methods").beginObject();
+        commit(TRAILER);
+    }
+
+    @Override
+    public synchronized void onCoverage(String testMethod, List<String> coveredMethods) {
+        try {
+            writer.name(testMethod).beginArray();
+            for (String method : coveredMethods) {
+                writer.value(method);
+            }
+            writer.endArray();
+            commit(TRAILER);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write coverage entry for " + testMethod, e);
+        }
+    }
+
+    @Override
+    public synchronized void onIncomplete(String testMethod, String reason) {
+        incompleteTests.put(testMethod, reason);
+    }
+
+    /**
+     * 把已编码的内容和 trailer 一起写到上一个闭合括号处；position 只前进到 trailer 之前，
+     * 下一条记录会覆盖 trailer。
+     */
+    private void commit(byte[] trailer) throws IOException {
+        writer.flush();
+        int length = pending.size();
+        pending.write(trailer);
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+        pending.reset();
+        long at = position;
+        while (buffer.hasRemaining()) {
+            at += channel.write(buffer, at);
+        }
+        position += length;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            writer.endObject();
+            if (!incompleteTests.isEmpty()) {
+                writer.name("incomplete_tests").beginObject();
+                for (Map.Entry<String, String> entry : incompleteTests.entrySet()) {
+                    writer.name(entry.getKey()).value(entry.getValue());
+                }
+                writer.endObject();
+            }
+            writer.endObject();
+            commit(new byte[0]);
+            channel.truncate(position);
+        } finally {
+            channel.close();
+        }
+        Log.info("Coverage report saved to: " + filePath);
+    }
+}
@@ -0,0 +1,165 @@
+package com.coverage.analyzer;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各测试的历史耗时，保存在输出目录的 coverage_history.json，每次运行后更新。
+ * 用于三件事：按预计耗时从长到短排序（长测试先启动，缩短并行和分片的尾部等待）；
+ * 根据历史耗时收紧单个测试的超时，卡死的测试不再耗满默认超时；
+ * 连续多次超时的测试放入隔离批次，在其他测试全部完成后单独运行。
+ */
+public class TestHistory {
+    public static final String FILE_NAME = "coverage_history.json";
+
+    // 连续超时达到该次数的测试进入隔离批次
+    static final int QUARANTINE_TIMEOUTS = 2;
+    // 自适应超时为历史耗时的倍数，且不低于下限、不超过默认超时
+    private static final int TIMEOUT_FACTOR = 10;
+    private static final int MIN_TIMEOUT_SECONDS = 30;
+    // 指数滑动平均中最新一次耗时的权重
+    private static final double SMOOTHING = 0.5;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * 读取输出目录中的历史记录，不存在或无法解析时返回空记录。
+     */
+    public static TestHistory load(Path outputPath) {
+        TestHistory history = new TestHistory();
+        Path file = outputPath.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return history;
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            JsonObject root = new Gson().fromJson(reader, JsonObject.class);
+            for (Map.Entry<String, JsonElement> test : root.getAsJsonObject("tests").entrySet()) {
+                JsonObject json = test.getValue().getAsJsonObject();
+                Entry entry = new Entry();
+                entry.millis = json.get("millis").getAsLong();
+                entry.runs = json.get("runs").getAsInt();
+                entry.timeouts = json.get("timeouts").getAsInt();
+                history.entries.put(test.getKey(), entry);
+            }
+            Log.info("Loaded durations of " + history.entries.size() + " tests from " + file);
+        } catch (IOException | JsonParseException | IllegalStateException | NullPointerException e) {
+            Log.warn("Ignoring unreadable test history " + file + ": " + e.getMessage());
+            history.entries.clear();
+        }
+        return history;
+    }
+
+    public synchronized void record(String testMethod, long millis, boolean timedOut) {
+        Entry entry = entries.computeIfAbsent(testMethod, key -> new Entry());
+        entry.millis = entry.runs == 0 ? millis : Math.round(SMOOTHING * millis + (1 - SMOOTHING) * entry.millis);
+        entry.runs++;
+        entry.timeouts = timedOut ? entry.timeouts + 1 : 0;
+    }
+
+    /**
+     * 单个测试的超时：没有历史或最近超时过的测试使用默认超时，其余按历史耗时收紧。
+     */
+    public synchronized int timeoutSeconds(String testMethod, int defaultTimeout) {
+        Entry entry = entries.get(testMethod);
+        if (entry == null || entry.timeouts > 0) {
+            return defaultTimeout;
+        }
+        long adaptive = (entry.millis * TIMEOUT_FACTOR + 999) / 1000;
+        return (int) Math.min(defaultTimeout, Math.max(MIN_TIMEOUT_SECONDS, adaptive));
+    }
+
+    public synchronized boolean isQuarantined(String testMethod) {
+        Entry entry = entries.get(testMethod);
+        return entry != null && entry.timeouts >= QUARANTINE_TIMEOUTS;
+    }
+
+    /**
+     * 按预计耗时从长到短排序；没有历史的测试耗时未知，排在最前面。耗时相同时保持原顺序。
+     */
+    public synchronized List<String> orderLongestFirst(List<String> testMethods) {
+        List<String> ordered = new ArrayList<>(testMethods);
+        ordered.sort((a, b) -> Long.compare(expectedMillis(b), expectedMillis(a)));
+        return ordered;
+    }
+
+    private long expectedMillis(String testMethod) {
+        Entry entry = entries.get(testMethod);
+        return entry != null ? entry.millis : Long.MAX_VALUE;
+    }
+
+    public synchronized void save(Path outputPath) throws IOException {
+        JsonObject tests = new JsonObject();
+        for (Map.Entry<String, Entry> test : new TreeMap<>(entries).entrySet()) {
+            JsonObject json = new JsonObject();
+            json.addProperty("millis", test.getValue().millis);
+            json.addProperty("runs", test.getValue().runs);
+            json.addProperty("timeouts", test.getValue().timeouts);
+            tests.add(test.getKey(), json);
+        }
+        JsonObject root = new JsonObject();
+        root.add("tests", tests);
+        Files.createDirectories(outputPath);
+        try (Writer writer = Files.newBufferedWriter(outputPath.resolve(FILE_NAME), StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(root, writer);
+        }
+    }
+
+    /**
+     * 一次批量运行（按类批量或 JUnit Platform）中各测试的耗时，在测试线程中记录，
+     * 运行结束后写入历史；运行超时时仍在执行的测试记为超时。
+     * 参数化测试的多次调用累计到同一个测试方法。
+     */
+    public static class Recorder {
+        private final Map<String, Long> millis = new ConcurrentHashMap<>();
+        private volatile String running;
+        private volatile long runningSince;
+
+        public void started(String testMethod) {
+            runningSince = System.nanoTime();
+            running = testMethod;
+        }
+
+        public void finished(String testMethod) {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - runningSince);
+            millis.merge(testMethod, elapsed, Long::sum);
+            running = null;
+        }
+
+        public void commitTo(TestHistory history, boolean timedOut) {
+            String stuck = timedOut ? running : null;
+            for (Map.Entry<String, Long> entry : millis.entrySet()) {
+                if (!entry.getKey().equals(stuck)) {
+                    history.record(entry.getKey(), entry.getValue(), false);
+                }
+            }
+            if (stuck != null) {
+                long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - runningSince);
+                history.record(stuck, millis.getOrDefault(stuck, 0L) + elapsed, true);
+            }
+        }
+    }
+
+    private static class Entry {
+        long millis;
+        int runs;
+        // 连续超时次数，一次正常完成即清零
+        int timeouts;
+    }
+}
@@ -0,0 +1,52 @@
+package com.coverage.analyzer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 测试分片：按测试标识的哈希值把测试确定性地分配到 N 个分片之一。
+ * String.hashCode 的算法是固定的，因此不同机器、不同次运行得到的分片完全一致，
+ * 新增测试也不会改变已有测试所在的分片。
+ */
+public class TestShard {
+    private final int index;
+    private final int count;
+
+    public TestShard(int index, int count) {
+        if (count < 1 || index < 1 || index > count) {
+            throw new IllegalArgumentException("Invalid shard " + index + "/" + count);
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * 解析形如 "2/8" 的分片参数，分片编号从 1 开始。
+     */
+    public static TestShard parse(String value) {
+        String[] parts = value.split("/");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Shard must look like i/N: " + value);
+        }
+        return new TestShard(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+    }
+
+    public boolean contains(String testMethod) {
+        return Math.floorMod(testMethod.hashCode(), count) == index - 1;
+    }
+
+    public List<String> select(List<String> testMethods) {
+        List<String> selected = new ArrayList<>();
+        for (String testMethod : testMethods) {
+            if (contains(testMethod)) {
+                selected.add(testMethod);
+            }
+        }
+        return selected;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
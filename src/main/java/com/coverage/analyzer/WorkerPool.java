@@ -0,0 +1,331 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.CoverageResult;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多 JVM 工作进程池。每个子进程运行 {@link CoverageWorker}，持有独立的 JaCoCo 代理，
+ * 空闲的子进程从共享队列领取下一个测试，结果合并到同一个 CoverageResult。
+ */
+public class WorkerPool {
+    // 父进程等待子进程响应的期限在测试超时之外再留出的余量；子进程的第一个请求还要解析项目和映射类
+    private static final int RESPONSE_GRACE_SECONDS = 60;
+    private static final int STARTUP_GRACE_SECONDS = 600;
+
+    private final Path projectPath;
+    private final Path rulesetPath;
+    private final int workerCount;
+    private final Gson gson = new Gson();
+    private int testTimeout = 30;
+    private boolean offlineInstrumentation;
+    private boolean moduleRun;
+    private List<Path> moduleClasspath = new ArrayList<>();
+    private boolean lineGranularity;
+    private final Map<String, LineCoverage> lineCoverage = new ConcurrentHashMap<>();
+    private TestHistory history;
+    // 子进程入口类，测试中替换为按协议应答的模拟进程
+    private String workerMainClass = CoverageWorker.class.getName();
+    // 子进程在期限内没有响应时强制结束它，阻塞的 readLine 随之返回
+    private ScheduledExecutorService watchdog;
+
+    public WorkerPool(Path projectPath, Path rulesetPath, int workerCount) {
+        this.projectPath = projectPath.toAbsolutePath().normalize();
+        this.rulesetPath = rulesetPath;
+        this.workerCount = workerCount;
+    }
+
+    public CoverageResult collectCoverage(List<String> testMethods) throws InterruptedException {
+        return collectCoverage(testMethods, new CoverageResult());
+    }
+
+    public CoverageResult collectCoverage(List<String> testMethods, CoverageResult result)
+            throws InterruptedException {
+        Queue<String> pending = new ConcurrentLinkedQueue<>(testMethods);
+
+        int count = Math.max(1, Math.min(workerCount, testMethods.size()));
+        Log.info("Starting " + count + " worker JVMs for " + testMethods.size() + " tests");
+
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "coverage-worker-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(count);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int workerId = i;
+            futures.add(executor.submit(() -> drive(workerId, pending, result)));
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        watchdog.shutdownNow();
+
+        // drive 自己处理子进程的故障，这里剩下的是写出结果时的异常，整个运行随之失败
+        RuntimeException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Log.error("Worker driver failed: " + e.getCause(), e.getCause());
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException ?
+                            (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return result;
+    }
+
+    private void drive(int workerId, Queue<String> pending, CoverageResult result) {
+        WorkerProcess worker = null;
+        boolean completed = false;
+        try {
+            String testMethod;
+            while ((testMethod = pending.poll()) != null) {
+                List<String> coveredMethods;
+                String incomplete;
+                try {
+                    if (worker == null) {
+                        worker = new WorkerProcess(buildCommand());
+                    }
+                    int timeout = history != null ? history.timeoutSeconds(testMethod, testTimeout) : testTimeout;
+                    long start = PipelineMetrics.start();
+                    coveredMethods = worker.run(testMethod, timeout);
+                    incomplete = worker.lastIncomplete;
+                    PipelineMetrics.stop("worker_test", start);
+                    if (history != null) {
+                        history.record(testMethod, worker.lastMillis, worker.lastTimedOut);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // 子进程崩溃、无响应或返回无法解析的响应时，测试记为没有正常结束，并在下一个测试前重新启动
+                    Log.warn("Worker " + workerId + " failed on test " + testMethod + ": " + e);
+                    coveredMethods = null;
+                    incomplete = CoverageResult.WORKER_FAILED;
+                    PipelineMetrics.increment("worker_failures");
+                    if (worker != null) {
+                        worker.destroy();
+                        worker = null;
+                    }
+                }
+
+                // 写出结果失败（如报告文件不可写）不属于子进程故障，异常向上抛出，由 collectCoverage 检查
+                synchronized (result) {
+                    if (incomplete != null) {
+                        result.addIncomplete(testMethod, incomplete);
+                    } else {
+                        result.addCoverage(testMethod, coveredMethods);
+                    }
+                }
+            }
+            completed = true;
+        } finally {
+            if (worker != null) {
+                if (completed) {
+                    worker.close();
+                } else {
+                    worker.destroy();
+                }
+            }
+        }
+    }
+
+    private List<String> buildCommand() {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+
+        // 子进程沿用父进程的 JaCoCo 代理参数，各自独立插桩
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (argument.startsWith("-javaagent:")) {
+                command.add(argument);
+            }
+        }
+
+        command.add("-D" + Log.LEVEL_PROPERTY + "=" + Log.getLevel());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(workerMainClass);
+        if (offlineInstrumentation) {
+            command.add("--offline");
+        }
+        if (moduleRun) {
+            command.add("--single-module");
+        }
+        if (lineGranularity) {
+            command.add("--granularity");
+            command.add("line");
+        }
+        if (!moduleClasspath.isEmpty()) {
+            command.add("--module-classpath");
+            command.add(AnalyzerOptions.joinClasspath(moduleClasspath));
+        }
+        command.add(projectPath.toString());
+        command.add(String.valueOf(testTimeout));
+        if (rulesetPath != null) {
+            command.add(rulesetPath.toString());
+        }
+        return command;
+    }
+
+    public void setTestTimeout(int seconds) {
+        this.testTimeout = seconds;
+    }
+
+    /**
+     * 设置测试耗时历史：每个测试按历史收紧超时并随请求发给子进程，往返耗时写回历史。
+     */
+    public void setHistory(TestHistory history) {
+        this.history = history;
+    }
+
+    void setWorkerMainClass(String workerMainClass) {
+        this.workerMainClass = workerMainClass;
+    }
+
+    public void setModuleRun(boolean moduleRun) {
+        this.moduleRun = moduleRun;
+    }
+
+    public void setOfflineInstrumentation(boolean offlineInstrumentation) {
+        this.offlineInstrumentation = offlineInstrumentation;
+    }
+
+    public void setModuleClasspath(List<Path> moduleClasspath) {
+        this.moduleClasspath = new ArrayList<>(moduleClasspath);
+    }
+
+    public void setLineGranularity(boolean lineGranularity) {
+        this.lineGranularity = lineGranularity;
+    }
+
+    /**
+     * 取走某个测试由子进程返回的行覆盖。
+     */
+    public LineCoverage takeLineCoverage(String testMethod) {
+        return lineCoverage.remove(testMethod);
+    }
+
+    private class WorkerProcess {
+        private final Process process;
+        private final BufferedWriter requests;
+        private final BufferedReader responses;
+        // 上一个测试在子进程内的耗时
+        long lastMillis;
+        // 上一个测试是否在子进程内超时
+        boolean lastTimedOut;
+        // 上一个测试没有正常结束的原因，正常结束时为 null
+        String lastIncomplete;
+        // 是否已响应过请求；第一个请求的响应期限包含子进程准备项目的时间
+        private boolean started;
+        private volatile boolean killed;
+
+        WorkerProcess(List<String> command) throws IOException {
+            process = new ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            requests = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+            responses = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        List<String> run(String testMethod, int timeoutSeconds) throws IOException {
+            requests.write(testMethod + "\t" + timeoutSeconds);
+            requests.newLine();
+            requests.flush();
+
+            int deadline = timeoutSeconds + (started ? RESPONSE_GRACE_SECONDS : STARTUP_GRACE_SECONDS);
+            ScheduledFuture<?> kill = watchdog.schedule(() -> {
+                killed = true;
+                process.destroyForcibly();
+            }, deadline, TimeUnit.SECONDS);
+            String line;
+            try {
+                line = responses.readLine();
+            } finally {
+                kill.cancel(false);
+            }
+            if (line == null) {
+                if (killed) {
+                    PipelineMetrics.increment("workers_killed");
+                    throw new IOException("no response within " + deadline + " seconds, worker killed");
+                }
+                throw new IOException("worker exited with code " + waitForExit());
+            }
+            started = true;
+            JsonObject response = gson.fromJson(line, JsonObject.class);
+            if (!testMethod.equals(response.get("test").getAsString())) {
+                throw new IOException("unexpected response: " + line);
+            }
+            lastMillis = response.has("millis") ? response.get("millis").getAsLong() : 0;
+            lastTimedOut = response.has("timed_out") && response.get("timed_out").getAsBoolean();
+            lastIncomplete = response.has("incomplete") ? response.get("incomplete").getAsString() : null;
+            if (response.has("lines")) {
+                lineCoverage.put(testMethod, LineCoverage.fromJson(response));
+            }
+            return new ArrayList<>(Arrays.asList(gson.fromJson(response.get("methods"), String[].class)));
+        }
+
+        private int waitForExit() {
+            try {
+                return process.waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+
+        /**
+         * 关闭输入后读取子进程最后写出的指标快照并合并，再等待其退出。
+         */
+        void close() {
+            try {
+                requests.close();
+                String line;
+                while ((line = responses.readLine()) != null) {
+                    JsonObject response = gson.fromJson(line, JsonObject.class);
+                    if (response.has("metrics")) {
+                        PipelineMetrics.merge(response.getAsJsonObject("metrics"));
+                    }
+                }
+                if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (IOException e) {
+                process.destroyForcibly();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+            }
+        }
+
+        void destroy() {
+            process.destroyForcibly();
+        }
+    }
+}
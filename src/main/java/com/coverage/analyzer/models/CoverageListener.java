@@ -0,0 +1,13 @@
+package com.coverage.analyzer.models;
+
+import java.util.List;
+
+public interface CoverageListener {
+    void onCoverage(String testMethod, List<String> coveredMethods);
+
+    /**
+     * 测试没有正常结束（超时、工作进程故障、未执行到），没有覆盖数据。默认忽略。
+     */
+    default void onIncomplete(String testMethod, String reason) {
+    }
+}
@@ -1,17 +1,141 @@
 package com.coverage.analyzer.models;
 
-import java.util.HashMap;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+/**
+ * 测试到被覆盖方法的矩阵。方法名通过 {@link MethodDictionary} 映射为整数 id，
+ * 每个测试的覆盖集合保存为压缩位图。设置内存预算后，超出预算的位图会溢出到磁盘。
+ */
 public class CoverageResult {
-    private Map<String, List<String>> testCoverageAgainstMethods = new HashMap<>();
+    // 测试没有正常结束的原因
+    public static final String TIMED_OUT = "timed_out";
+    public static final String WORKER_FAILED = "worker_failed";
+    public static final String NOT_RUN = "not_run";
+    public static final String ERROR = "error";
+
+    private final MethodDictionary methodDictionary = new MethodDictionary();
+    private final Map<String, Row> testCoverage = new LinkedHashMap<>();
+    private final List<Row> inMemoryRows = new ArrayList<>();
+    private final Map<String, String> incompleteTests = new LinkedHashMap<>();
+    private final List<CoverageListener> listeners = new ArrayList<>();
+    private boolean retainCoverage = true;
+    private long memoryBudgetBytes = Long.MAX_VALUE;
+    private long inMemoryBytes;
+    private CoverageSpillFile spillFile;
 
     public void addCoverage(String testMethod, List<String> coveredMethods) {
-        testCoverageAgainstMethods.put(testMethod, coveredMethods);
+        incompleteTests.remove(testMethod);
+        if (retainCoverage) {
+            RoaringBitmap methodIds = new RoaringBitmap();
+            for (String method : coveredMethods) {
+                methodIds.add(methodDictionary.idOf(method));
+            }
+            methodIds.runOptimize();
+
+            Row row = new Row(methodIds);
+            testCoverage.put(testMethod, row);
+            inMemoryRows.add(row);
+            inMemoryBytes += methodIds.getSizeInBytes();
+            if (spillFile != null && inMemoryBytes > memoryBudgetBytes) {
+                spill();
+            }
+        }
+        for (CoverageListener listener : listeners) {
+            listener.onCoverage(testMethod, coveredMethods);
+        }
+    }
+
+    /**
+     * 记录没有正常结束的测试。它不占覆盖矩阵的行，之前的结果（常驻模式重跑时）一并移除，
+     * 下次运行不会把它当作覆盖为空的已完成测试复用。
+     */
+    public void addIncomplete(String testMethod, String reason) {
+        testCoverage.remove(testMethod);
+        incompleteTests.put(testMethod, reason);
+        for (CoverageListener listener : listeners) {
+            listener.onIncomplete(testMethod, reason);
+        }
+    }
+
+    /**
+     * 没有正常结束的测试及原因。
+     */
+    public Map<String, String> getIncompleteTests() {
+        return Collections.unmodifiableMap(incompleteTests);
+    }
+
+    private void spill() {
+        for (Row row : inMemoryRows) {
+            if (row.bitmap == null) {
+                continue;
+            }
+            row.spillLength = row.bitmap.serializedSizeInBytes();
+            row.spillOffset = spillFile.append(row.bitmap);
+            row.bitmap = null;
+        }
+        inMemoryRows.clear();
+        inMemoryBytes = 0;
+    }
+
+    public void addListener(CoverageListener listener) {
+        listeners.add(listener);
+    }
+
+    // 流式导出时结果交给监听器处理，不在内存中保留
+    public void setRetainCoverage(boolean retainCoverage) {
+        this.retainCoverage = retainCoverage;
+    }
+
+    /**
+     * 设置位图占用的内存预算，超出后已完成的结果写入溢出文件，读取时按需加载。
+     */
+    public void setMemoryBudget(long budgetBytes, CoverageSpillFile spillFile) {
+        this.memoryBudgetBytes = budgetBytes;
+        this.spillFile = spillFile;
+    }
+
+    public Set<String> getTestMethods() {
+        return Collections.unmodifiableSet(testCoverage.keySet());
+    }
+
+    public RoaringBitmap getCoveredMethodIds(String testMethod) {
+        Row row = testCoverage.get(testMethod);
+        if (row == null) {
+            return null;
+        }
+        return row.bitmap != null ? row.bitmap : spillFile.read(row.spillOffset, row.spillLength);
+    }
+
+    /**
+     * 按方法 id 顺序解码单个测试覆盖的方法名。
+     */
+    public List<String> getCoveredMethods(String testMethod) {
+        List<String> methods = new ArrayList<>();
+        RoaringBitmap methodIds = getCoveredMethodIds(testMethod);
+        if (methodIds != null) {
+            methodIds.forEach((int id) -> methods.add(methodDictionary.methodOf(id)));
+        }
+        return methods;
     }
 
-    public Map<String, List<String>> getTestCoverageAgainstMethods() {
-        return testCoverageAgainstMethods;
+    public MethodDictionary getMethodDictionary() {
+        return methodDictionary;
+    }
+
+    private static class Row {
+        RoaringBitmap bitmap;
+        long spillOffset;
+        int spillLength;
+
+        Row(RoaringBitmap bitmap) {
+            this.bitmap = bitmap;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,72 @@
+package com.coverage.analyzer.models;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 覆盖结果的磁盘溢出文件。超出内存预算的位图按可移植格式追加写入，按偏移随机读取。
+ */
+public class CoverageSpillFile implements Closeable {
+    private final Path path;
+    private final FileChannel channel;
+    private long size;
+
+    public CoverageSpillFile(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        // 异常退出时也不留下临时文件
+        path.toFile().deleteOnExit();
+    }
+
+    /**
+     * @return 位图在文件中的偏移
+     */
+    public synchronized long append(RoaringBitmap bitmap) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(bitmap.serializedSizeInBytes());
+            bitmap.serialize(new DataOutputStream(bytes));
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            long offset = size;
+            while (buffer.hasRemaining()) {
+                size += channel.write(buffer, size);
+            }
+            return offset;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to spill coverage to " + path, e);
+        }
+    }
+
+    public synchronized RoaringBitmap read(long offset, int length) {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of spill file");
+                }
+            }
+            buffer.flip();
+            RoaringBitmap bitmap = new RoaringBitmap();
+            bitmap.deserialize(buffer);
+            return bitmap;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read spilled coverage from " + path, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+}
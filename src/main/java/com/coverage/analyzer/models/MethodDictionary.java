@@ -0,0 +1,36 @@
+package com.coverage.analyzer.models;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 方法标识字典：每个 package.Class#method 只保存一份，并分配连续的整数 id。
+ */
+public class MethodDictionary {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> methods = new ArrayList<>();
+
+    public synchronized int idOf(String method) {
+        Integer id = ids.get(method);
+        if (id == null) {
+            id = methods.size();
+            methods.add(method);
+            ids.put(method, id);
+        }
+        return id;
+    }
+
+    public synchronized Integer findId(String method) {
+        return ids.get(method);
+    }
+
+    public synchronized String methodOf(int id) {
+        return methods.get(id);
+    }
+
+    public synchronized int size() {
+        return methods.size();
+    }
+}
@@ -0,0 +1,21 @@
+package com.coverage.analyzer.models;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+public class ProjectModel {
+    private final Path projectPath;
+    private final ProjectStats stats;
+    private final List<String> testMethods;
+
+    public ProjectModel(Path projectPath, ProjectStats stats, List<String> testMethods) {
+        this.projectPath = projectPath;
+        this.stats = stats;
+        this.testMethods = Collections.unmodifiableList(testMethods);
+    }
+
+    public Path getProjectPath() { return projectPath; }
+    public ProjectStats getStats() { return stats; }
+    public List<String> getTestMethods() { return testMethods; }
+}
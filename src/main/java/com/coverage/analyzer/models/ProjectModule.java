@@ -0,0 +1,35 @@
+package com.coverage.analyzer.models;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 多模块项目中的一个模块：相对根目录的名称、模块目录和它依赖的其他模块。
+ */
+public class ProjectModule {
+    private final String name;
+    private final Path path;
+    private final List<ProjectModule> dependencies = new ArrayList<>();
+
+    public ProjectModule(String name, Path path) {
+        this.name = name;
+        this.path = path;
+    }
+
+    public String getName() { return name; }
+    public Path getPath() { return path; }
+    public List<ProjectModule> getDependencies() { return Collections.unmodifiableList(dependencies); }
+
+    public void addDependency(ProjectModule module) {
+        if (module != this && !dependencies.contains(module)) {
+            dependencies.add(module);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
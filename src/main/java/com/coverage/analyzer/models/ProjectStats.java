@@ -13,12 +13,15 @@ public class ProjectStats {
 
     public int getNumJavaFiles() { return numJavaFiles; }
     public void incrementJavaFiles() { numJavaFiles++; }
+    public void addJavaFiles(int count) { numJavaFiles += count; }
 
     public int getNumClasses() { return numClasses; }
     public void incrementClasses() { numClasses++; }
+    public void addClasses(int count) { numClasses += count; }
 
     public int getNumMethods() { return numMethods; }
     public void incrementMethods() { numMethods++; }
+    public void addMethods(int count) { numMethods += count; }
 
     public int getNumTestMethods() { return numTestMethods; }
     public void setNumTestMethods(int numTestMethods) { this.numTestMethods = numTestMethods; }
@@ -0,0 +1,104 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.CoverageResult;
+import com.coverage.analyzer.models.ProjectModel;
+import com.coverage.analyzer.models.ProjectStats;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * coverage_report.bin 的往返校验：统计信息、方法表、各测试的覆盖和按方法查询都与写入的覆盖结果一致。
+ * 方法表和测试表按需从映射区读取，查询按完整的方法标识比较。
+ */
+public class BinaryCoverageReportTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void randomMatrixRoundTrips() throws Exception {
+        Random random = new Random(7L);
+        ProjectStats stats = new ProjectStats();
+        stats.setLocation("/tmp/项目");
+        stats.addJavaFiles(12);
+        stats.addClasses(34);
+        stats.addMethods(567);
+        stats.setNumTestMethods(890);
+
+        CoverageResult coverageResult = new CoverageResult();
+        Map<String, Set<String>> expected = new LinkedHashMap<>();
+        for (int test = 0; test < 1000; test++) {
+            Set<String> covered = new LinkedHashSet<>();
+            int count = random.nextInt(50);
+            for (int i = 0; i < count; i++) {
+                covered.add("pkg.C" + random.nextInt(40) + "#m" + random.nextInt(25) + "()V");
+            }
+            String testMethod = "pkg.FooTest#test" + test;
+            coverageResult.addCoverage(testMethod, new ArrayList<>(covered));
+            expected.put(testMethod, covered);
+        }
+
+        Path reportFile = folder.getRoot().toPath().resolve(BinaryCoverageReport.FILE_NAME);
+        BinaryCoverageReport.write(reportFile, new ProjectModel(null, stats, Collections.<String>emptyList()), coverageResult);
+        BinaryCoverageReport report = BinaryCoverageReport.open(reportFile);
+
+        assertEquals("/tmp/项目", report.getStats().getLocation());
+        assertEquals(12, report.getStats().getNumJavaFiles());
+        assertEquals(34, report.getStats().getNumClasses());
+        assertEquals(567, report.getStats().getNumMethods());
+        assertEquals(890, report.getStats().getNumTestMethods());
+        assertEquals(new ArrayList<>(expected.keySet()), report.getTestMethods());
+
+        Set<String> allMethods = new TreeSet<>();
+        for (int i = 0; i < report.getTestMethods().size(); i++) {
+            Set<String> covered = expected.get(report.getTestMethods().get(i));
+            assertEquals(new TreeSet<>(covered), new TreeSet<>(report.getCoveredMethods(i)));
+            allMethods.addAll(covered);
+        }
+        assertEquals(allMethods, new TreeSet<>(report.getMethods()));
+
+        for (String method : allMethods) {
+            List<String> tests = new ArrayList<>();
+            for (Map.Entry<String, Set<String>> entry : expected.entrySet()) {
+                if (entry.getValue().contains(method)) {
+                    tests.add(entry.getKey());
+                }
+            }
+            assertEquals(method, tests, report.findTestsCoveringMethod(method));
+        }
+        assertEquals(Collections.<String>emptyList(), report.findTestsCoveringMethod("pkg.Missing#m()V"));
+    }
+
+    @Test
+    public void methodLookupComparesWholeIdentifiers() throws Exception {
+        CoverageResult coverageResult = new CoverageResult();
+        coverageResult.addCoverage("pkg.T#a", Arrays.asList("pkg.C#m()V", "pkg.C#m()Vx"));
+        coverageResult.addCoverage("pkg.T#b", Collections.singletonList("pkg.中文#方法()V"));
+        coverageResult.addCoverage("pkg.T#c", Collections.<String>emptyList());
+
+        Path reportFile = folder.getRoot().toPath().resolve(BinaryCoverageReport.FILE_NAME);
+        BinaryCoverageReport.write(reportFile,
+                new ProjectModel(null, new ProjectStats(), Collections.<String>emptyList()), coverageResult);
+        BinaryCoverageReport report = BinaryCoverageReport.open(reportFile);
+
+        assertEquals(Arrays.asList("pkg.C#m()V", "pkg.C#m()Vx", "pkg.中文#方法()V"), report.getMethods());
+        assertEquals(Collections.singletonList("pkg.T#a"), report.findTestsCoveringMethod("pkg.C#m()V"));
+        assertEquals(Collections.singletonList("pkg.T#b"), report.findTestsCoveringMethod("pkg.中文#方法()V"));
+        assertEquals(Collections.<String>emptyList(), report.findTestsCoveringMethod("pkg.C#m()"));
+        assertEquals(Collections.<String>emptyList(), report.getCoveredMethods(2));
+    }
+}
@@ -0,0 +1,126 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.CoverageResult;
+import com.coverage.analyzer.models.ProjectStats;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 变更影响测试选择：哪些测试重新运行，哪些沿用上一次的结果。
+ */
+public class ChangeImpactSelectorTest {
+    private static final List<String> TESTS = Arrays.asList(
+            "p.ATest#foo", "p.ATest#bar", "p.ATest#empty", "p.ATest#hung", "p.BTest#useBaz", "p.ATest#added");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path classesDir;
+    private Path testClassesDir;
+    private Path previousOutput;
+
+    @Before
+    public void setUp() throws IOException {
+        classesDir = folder.newFolder("classes").toPath();
+        testClassesDir = folder.newFolder("test-classes").toPath();
+        previousOutput = folder.newFolder("previous").toPath();
+        write(classesDir, "p/Foo.class", "foo".getBytes(StandardCharsets.UTF_8));
+        write(classesDir, "p/Bar.class", "bar".getBytes(StandardCharsets.UTF_8));
+        write(classesDir, "p/Baz.class", "baz".getBytes(StandardCharsets.UTF_8));
+        write(testClassesDir, "p/ATest.class", testClass("p/ATest", null));
+        // BTest 只调用 Baz 的构造器，覆盖结果中没有 Baz 的方法
+        write(testClassesDir, "p/BTest.class", testClass("p/BTest", "p/Baz"));
+
+        fingerprints().save(previousOutput);
+        try (StreamingResultExporter report = new StreamingResultExporter(previousOutput, new ProjectStats(), 5)) {
+            report.onCoverage("p.ATest#foo", Collections.singletonList("p.Foo#a()V"));
+            report.onCoverage("p.ATest#bar", Collections.singletonList("p.Bar#b()V"));
+            report.onCoverage("p.ATest#empty", Collections.<String>emptyList());
+            report.onIncomplete("p.ATest#hung", CoverageResult.TIMED_OUT);
+            report.onCoverage("p.BTest#useBaz", Collections.singletonList("p.Bar#b()V"));
+        }
+    }
+
+    @Test
+    public void unchangedTreeReusesEveryCompletedTest() throws IOException {
+        CoverageResult result = new CoverageResult();
+        List<String> affected = new ChangeImpactSelector(previousOutput, fingerprints()).select(TESTS, result);
+        assertEquals(Arrays.asList("p.ATest#empty", "p.ATest#hung", "p.ATest#added"), affected);
+        assertEquals(Collections.singletonList("p.Foo#a()V"), result.getCoveredMethods("p.ATest#foo"));
+    }
+
+    @Test
+    public void changedClassesSelectCoveringAndReferencingTests() throws IOException {
+        write(classesDir, "p/Foo.class", "foo2".getBytes(StandardCharsets.UTF_8));
+        write(classesDir, "p/Baz.class", "baz2".getBytes(StandardCharsets.UTF_8));
+        CoverageResult result = new CoverageResult();
+        List<String> affected = new ChangeImpactSelector(previousOutput, fingerprints()).select(TESTS, result);
+        assertEquals(Arrays.asList("p.ATest#foo", "p.ATest#empty", "p.ATest#hung", "p.BTest#useBaz", "p.ATest#added"),
+                affected);
+        assertEquals(Collections.singleton("p.ATest#bar"), result.getTestMethods());
+    }
+
+    @Test
+    public void changedTestClassSelectsItsTests() throws IOException {
+        write(testClassesDir, "p/BTest$1.class", testClass("p/BTest$1", null));
+        List<String> affected = new ChangeImpactSelector(previousOutput, fingerprints())
+                .select(TESTS, new CoverageResult());
+        assertEquals(Arrays.asList("p.ATest#empty", "p.ATest#hung", "p.BTest#useBaz", "p.ATest#added"), affected);
+    }
+
+    @Test
+    public void changedHelperOrResourceRerunsEverything() throws IOException {
+        write(testClassesDir, "p/Helper.class", testClass("p/Helper", null));
+        assertEquals(TESTS, new ChangeImpactSelector(previousOutput, fingerprints()).select(TESTS, new CoverageResult()));
+
+        Files.delete(testClassesDir.resolve("p/Helper.class"));
+        write(testClassesDir, "fixture.txt", "data".getBytes(StandardCharsets.UTF_8));
+        assertEquals(TESTS, new ChangeImpactSelector(previousOutput, fingerprints()).select(TESTS, new CoverageResult()));
+    }
+
+    private ClassFingerprints fingerprints() throws IOException {
+        return ClassFingerprints.compute(Collections.singletonList(classesDir), testClassesDir);
+    }
+
+    /**
+     * 生成一个测试类，referenced 不为 null 时其方法创建该类的实例。
+     */
+    private static byte[] testClass(String name, String referenced) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+        MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC, "run", "()V", null, null);
+        method.visitCode();
+        if (referenced != null) {
+            method.visitTypeInsn(Opcodes.NEW, referenced);
+            method.visitInsn(Opcodes.DUP);
+            method.visitMethodInsn(Opcodes.INVOKESPECIAL, referenced, "<init>", "()V", false);
+            method.visitInsn(Opcodes.POP);
+        }
+        method.visitInsn(Opcodes.RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static void write(Path root, String path, byte[] content) throws IOException {
+        Path file = root.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+    }
+}
@@ -0,0 +1,143 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.CoverageResult;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 断点续跑日志：复用、失效、未完成测试和压缩。
+ */
+public class CoverageJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path classesDir;
+    private Path testClassesDir;
+    private Path journalFile;
+
+    @Before
+    public void setUp() throws IOException {
+        classesDir = folder.newFolder("classes").toPath();
+        testClassesDir = folder.newFolder("test-classes").toPath();
+        journalFile = folder.getRoot().toPath().resolve("out").resolve(CoverageJournal.FILE_NAME);
+        writeClass(classesDir, "p/Foo.class", "foo");
+        writeClass(testClassesDir, "p/ATest.class", "a");
+        writeClass(testClassesDir, "p/BTest.class", "b");
+    }
+
+    @Test
+    public void resumesCompletedTestsAndRerunsIncompleteOnes() throws IOException {
+        List<String> tests = Arrays.asList("p.ATest#one", "p.ATest#two", "p.BTest#three");
+        try (CoverageJournal journal = open()) {
+            CoverageResult result = new CoverageResult();
+            assertEquals(tests, journal.resume(tests, result));
+            result.addCoverage("p.ATest#one", Collections.singletonList("p.Foo#bar()V"));
+            result.addIncomplete("p.ATest#two", CoverageResult.TIMED_OUT);
+        }
+
+        try (CoverageJournal journal = open()) {
+            CoverageResult result = new CoverageResult();
+            assertEquals(Arrays.asList("p.ATest#two", "p.BTest#three"), journal.resume(tests, result));
+            assertEquals(Collections.singletonList("p.Foo#bar()V"), result.getCoveredMethods("p.ATest#one"));
+        }
+    }
+
+    @Test
+    public void changedTestClassInvalidatesEverything() throws IOException {
+        List<String> tests = Arrays.asList("p.ATest#one", "p.BTest#three");
+        runAll(tests);
+        writeClass(testClassesDir, "p/ATest$Inner.class", "inner");
+        // 目录哈希覆盖整个 test-classes，任何测试类文件变化都会使全部条目失效
+        try (CoverageJournal journal = open()) {
+            assertEquals(tests, journal.resume(tests, new CoverageResult()));
+        }
+    }
+
+    @Test
+    public void changedProductionClassInvalidatesEverything() throws IOException {
+        List<String> tests = Arrays.asList("p.ATest#one", "p.BTest#three");
+        runAll(tests);
+        writeClass(classesDir, "p/Foo.class", "foo2");
+        try (CoverageJournal journal = open()) {
+            assertEquals(tests, journal.resume(tests, new CoverageResult()));
+        }
+    }
+
+    @Test
+    public void legacyEmptyEntriesAreRerun() throws IOException {
+        List<String> tests = Arrays.asList("p.ATest#one", "p.BTest#three");
+        runAll(tests);
+        // 早期版本写出的空记录没有 completed 标记
+        String legacy = "{\"test\":\"p.BTest#three\",\"key\":\"" + keyOf("p.BTest#three") + "\",\"methods\":[]}\n";
+        Files.write(journalFile, legacy.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        try (CoverageJournal journal = open()) {
+            assertEquals(Collections.singletonList("p.BTest#three"), journal.resume(tests, new CoverageResult()));
+        }
+    }
+
+    @Test
+    public void resumeCompactsDuplicatesAndDropsCutOffLine() throws IOException {
+        List<String> tests = Arrays.asList("p.ATest#one", "p.BTest#three");
+        for (int run = 0; run < 3; run++) {
+            try (CoverageJournal journal = open()) {
+                CoverageResult result = new CoverageResult();
+                journal.resume(Collections.<String>emptyList(), result);
+                for (String test : tests) {
+                    result.addCoverage(test, Collections.singletonList("p.Foo#bar()V"));
+                }
+            }
+        }
+        Files.write(journalFile, "{\"test\":\"p.ATest#one\",\"ke".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        // 每次续跑先压缩为两条，再追加本次的两条重复记录和被截断的一行
+        assertEquals(5, Files.readAllLines(journalFile, StandardCharsets.UTF_8).size());
+
+        try (CoverageJournal journal = open()) {
+            assertTrue(journal.resume(tests, new CoverageResult()).isEmpty());
+        }
+        assertEquals(2, Files.readAllLines(journalFile, StandardCharsets.UTF_8).size());
+    }
+
+    private void runAll(List<String> tests) throws IOException {
+        try (CoverageJournal journal = open()) {
+            CoverageResult result = new CoverageResult();
+            journal.resume(tests, result);
+            for (String test : tests) {
+                result.addCoverage(test, Collections.singletonList("p.Foo#bar()V"));
+            }
+        }
+    }
+
+    private String keyOf(String test) throws IOException {
+        for (String line : Files.readAllLines(journalFile, StandardCharsets.UTF_8)) {
+            if (line.contains("\"" + test + "\"")) {
+                return line.replaceAll(".*\"key\":\"([^\"]*)\".*", "$1");
+            }
+        }
+        throw new AssertionError("no entry for " + test);
+    }
+
+    private CoverageJournal open() throws IOException {
+        return new CoverageJournal(journalFile, Collections.singletonList(classesDir), testClassesDir);
+    }
+
+    private static void writeClass(Path root, String path, String content) throws IOException {
+        Path file = root.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,81 @@
+package com.coverage.analyzer;
+
+import com.google.gson.JsonObject;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * coverage_lines.jsonl 中行集合和分支编码的往返校验。
+ */
+public class LineCoverageTest {
+    @Test
+    public void encodesDocumentedExamples() {
+        BitSet covered = new BitSet();
+        covered.set(12, 16);
+        covered.set(18);
+        covered.set(20, 23);
+        assertEquals("12+3,3,2+2", LineCoverage.encodeLines(covered));
+        assertArrayEquals(new int[]{12, 13, 14, 15, 18, 20, 21, 22}, LineCoverage.decodeLines("12+3,3,2+2"));
+
+        TreeMap<Integer, int[]> branches = new TreeMap<>();
+        branches.put(14, new int[]{1, 2});
+        branches.put(20, new int[]{2, 2});
+        assertEquals("14:1/2,6:2/2", LineCoverage.encodeBranches(branches));
+    }
+
+    @Test
+    public void emptySetsRoundTrip() {
+        assertEquals("", LineCoverage.encodeLines(new BitSet()));
+        assertEquals(0, LineCoverage.decodeLines("").length);
+        assertEquals("", LineCoverage.encodeBranches(new TreeMap<Integer, int[]>()));
+        assertEquals(0, LineCoverage.decodeBranches("").size());
+    }
+
+    @Test
+    public void randomLinesAndBranchesRoundTrip() {
+        Random random = new Random(42L);
+        for (int round = 0; round < 2000; round++) {
+            BitSet covered = new BitSet();
+            TreeMap<Integer, int[]> branches = new TreeMap<>();
+            int lineCount = random.nextInt(200);
+            for (int i = 0; i < lineCount; i++) {
+                int line = 1 + random.nextInt(random.nextBoolean() ? 300 : 20000);
+                covered.set(line);
+                if (random.nextInt(5) == 0) {
+                    int total = 2 * (1 + random.nextInt(8));
+                    branches.put(line, new int[]{random.nextInt(total + 1), total});
+                }
+            }
+
+            int[] decoded = LineCoverage.decodeLines(LineCoverage.encodeLines(covered));
+            assertArrayEquals(covered.stream().toArray(), decoded);
+
+            TreeMap<Integer, int[]> decodedBranches = LineCoverage.decodeBranches(LineCoverage.encodeBranches(branches));
+            assertEquals(branches.keySet(), decodedBranches.keySet());
+            for (Map.Entry<Integer, int[]> entry : branches.entrySet()) {
+                assertArrayEquals(entry.getValue(), decodedBranches.get(entry.getKey()));
+            }
+        }
+    }
+
+    @Test
+    public void jsonRoundTrip() {
+        JsonObject lines = new JsonObject();
+        lines.addProperty("pkg.Foo", "3+4,10");
+        lines.addProperty("pkg.Foo$Inner", "120");
+        JsonObject branches = new JsonObject();
+        branches.addProperty("pkg.Foo", "5:1/2,8:4/4");
+        JsonObject json = new JsonObject();
+        json.add("lines", lines);
+        json.add("branches", branches);
+
+        assertEquals(json, LineCoverage.fromJson(json).toJson());
+    }
+}
@@ -0,0 +1,85 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.CoverageResult;
+import com.google.gson.JsonObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * coverage_lines.jsonl 的写出：新执行的测试、沿用上一次的行、没有正常结束的测试。
+ */
+public class LineCoverageWriterTest {
+    private static final String ROW_A = "{\"test\":\"p.ATest#a\",\"lines\":{\"p.Foo\":\"3+2\"},\"branches\":{}}";
+    private static final String ROW_B = "{\"test\":\"p.测试#b\",\"lines\":{\"p.类\":\"7\"},\"branches\":{\"p.类\":\"7:1/2\"}}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void resumeCarriesRowsForwardFromTheOutputFile() throws IOException {
+        Path output = folder.getRoot().toPath();
+        Path file = output.resolve(LineCoverageWriter.FILE_NAME);
+        // 最后一行没有换行，是被中断的写入
+        String previous = ROW_A + "\n" + "not json\n" + ROW_B + "\n" + "{\"test\":\"p.ATest#c\",\"li";
+        Files.write(file, previous.getBytes(StandardCharsets.UTF_8));
+
+        CoverageResult result = new CoverageResult();
+        try (LineCoverageWriter writer = new LineCoverageWriter(output, test -> null,
+                Collections.singletonList(file))) {
+            result.addListener(writer);
+            result.addCoverage("p.测试#b", Collections.<String>emptyList());
+            result.addCoverage("p.ATest#a", Collections.<String>emptyList());
+            result.addCoverage("p.ATest#c", Collections.<String>emptyList());
+        }
+
+        assertEquals(Arrays.asList(ROW_B, ROW_A), Files.readAllLines(file, StandardCharsets.UTF_8));
+        assertFalse(Files.exists(output.resolve(LineCoverageWriter.FILE_NAME + ".previous")));
+    }
+
+    @Test
+    public void executedTestsAreWrittenAndIncompleteTestsAreDropped() throws IOException {
+        Path previousDir = folder.newFolder("previous").toPath();
+        Path previousFile = previousDir.resolve(LineCoverageWriter.FILE_NAME);
+        Files.write(previousFile, (ROW_A + "\n").getBytes(StandardCharsets.UTF_8));
+
+        JsonObject encoded = new JsonObject();
+        JsonObject lines = new JsonObject();
+        lines.addProperty("p.Foo", "10");
+        encoded.add("lines", lines);
+        encoded.add("branches", new JsonObject());
+        Map<String, LineCoverage> staged = new HashMap<>();
+        staged.put("p.ATest#new", LineCoverage.fromJson(encoded));
+        staged.put("p.ATest#hung", LineCoverage.fromJson(encoded));
+
+        Path output = folder.newFolder("out").toPath();
+        CoverageResult result = new CoverageResult();
+        try (LineCoverageWriter writer = new LineCoverageWriter(output, staged::remove,
+                Collections.singletonList(previousFile))) {
+            result.addListener(writer);
+            result.addCoverage("p.ATest#new", Collections.<String>emptyList());
+            result.addIncomplete("p.ATest#hung", CoverageResult.TIMED_OUT);
+            result.addCoverage("p.ATest#a", Collections.<String>emptyList());
+        }
+
+        List<String> written = Files.readAllLines(output.resolve(LineCoverageWriter.FILE_NAME), StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList(
+                "{\"test\":\"p.ATest#new\",\"lines\":{\"p.Foo\":\"10\"},\"branches\":{}}", ROW_A), written);
+        assertEquals(Collections.emptyMap(), staged);
+        // 对比目录中的文件保持不变
+        assertEquals(Collections.singletonList(ROW_A), Files.readAllLines(previousFile, StandardCharsets.UTF_8));
+    }
+}
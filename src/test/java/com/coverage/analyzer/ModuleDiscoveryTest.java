@@ -0,0 +1,130 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.ProjectModule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 多模块发现：Maven 的 modules 递归展开和反应堆依赖，Gradle 的 include 和 project(...) 依赖。
+ */
+public class ModuleDiscoveryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void expandsMavenModulesAndReactorDependencies() throws IOException {
+        Path root = folder.getRoot().toPath();
+        write(root, "pom.xml", pom("parent", "pom",
+                "<modules><module>core</module><module>services</module><module>web/pom.xml</module>"
+                        + "<module>missing</module></modules>", ""));
+        write(root, "core/pom.xml", pom("core", null, "", ""));
+        // 聚合模块本身不作为模块
+        write(root, "services/pom.xml", pom("services", "pom", "<modules><module>api</module></modules>", ""));
+        write(root, "services/api/pom.xml", pom("api", null, "",
+                dependency("core") + dependency("junit")));
+        // dependencyManagement 和 profiles 中的依赖不是模块自身的依赖
+        write(root, "web/pom.xml", pom("web", "war",
+                "<dependencyManagement><dependencies>" + dependency("core") + "</dependencies></dependencyManagement>",
+                dependency("api")));
+
+        Map<String, ProjectModule> modules = byName(ModuleDiscovery.discover(root));
+        assertEquals(Arrays.asList("core", "services/api", "web"), new ArrayList<>(modules.keySet()));
+        assertEquals(root.resolve("services/api"), modules.get("services/api").getPath());
+        assertEquals(Collections.emptyList(), names(modules.get("core").getDependencies()));
+        assertEquals(Collections.singletonList("core"), names(modules.get("services/api").getDependencies()));
+        assertEquals(Collections.singletonList("services/api"), names(modules.get("web").getDependencies()));
+        assertEquals(Arrays.asList("services/api", "core"),
+                names(ModuleDiscovery.transitiveDependencies(modules.get("web"))));
+    }
+
+    @Test
+    public void readsGradleIncludesAndProjectDependencies() throws IOException {
+        Path root = folder.getRoot().toPath();
+        write(root, "settings.gradle", "rootProject.name = 'demo'\n"
+                + "include 'core', ':app'\n"
+                + "include(\"libs:util\")\n"
+                + "include 'absent'\n");
+        write(root, "core/build.gradle", "dependencies { implementation 'com.google.guava:guava:31.1-jre' }\n");
+        write(root, "app/build.gradle", "dependencies {\n"
+                + "    implementation project(':core')\n"
+                + "    testImplementation project(path: ':libs:util')\n"
+                + "}\n");
+        write(root, "libs/util/build.gradle.kts", "dependencies { api(project(\":core\")) }\n");
+        write(root, "src/main/java/p/Main.java", "package p; class Main {}\n");
+        write(root, "build.gradle", "dependencies { implementation project(':app') }\n");
+
+        Map<String, ProjectModule> modules = byName(ModuleDiscovery.discover(root));
+        assertEquals(Arrays.asList("core", "app", "libs/util", "."), new ArrayList<>(modules.keySet()));
+        assertEquals(Arrays.asList("core", "libs/util"), names(modules.get("app").getDependencies()));
+        assertEquals(Collections.singletonList("core"), names(modules.get("libs/util").getDependencies()));
+        assertEquals(Arrays.asList("app", "core", "libs/util"),
+                names(ModuleDiscovery.transitiveDependencies(modules.get("."))));
+    }
+
+    @Test
+    public void singleModuleProjectsReturnNoModules() throws IOException {
+        Path maven = folder.newFolder("maven").toPath();
+        write(maven, "pom.xml", pom("single", null, "", dependency("junit")));
+        assertTrue(ModuleDiscovery.discover(maven).isEmpty());
+
+        Path gradle = folder.newFolder("gradle").toPath();
+        write(gradle, "settings.gradle", "rootProject.name = 'single'\n");
+        write(gradle, "src/main/java/p/Main.java", "package p; class Main {}\n");
+        assertTrue(ModuleDiscovery.discover(gradle).isEmpty());
+
+        assertTrue(ModuleDiscovery.discover(folder.newFolder("plain").toPath()).isEmpty());
+    }
+
+    private static String pom(String artifactId, String packaging, String extra, String dependencies) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+                + "  <modelVersion>4.0.0</modelVersion>\n"
+                + "  <groupId>com.example</groupId>\n"
+                + "  <artifactId>" + artifactId + "</artifactId>\n"
+                + (packaging != null ? "  <packaging>" + packaging + "</packaging>\n" : "")
+                + "  " + extra + "\n"
+                + "  <dependencies>" + dependencies + "</dependencies>\n"
+                + "</project>\n";
+    }
+
+    private static String dependency(String artifactId) {
+        return "<dependency><groupId>com.example</groupId><artifactId>" + artifactId + "</artifactId></dependency>";
+    }
+
+    private static Map<String, ProjectModule> byName(List<ProjectModule> modules) {
+        Map<String, ProjectModule> byName = new LinkedHashMap<>();
+        for (ProjectModule module : modules) {
+            byName.put(module.getName(), module);
+        }
+        return byName;
+    }
+
+    private static List<String> names(List<ProjectModule> modules) {
+        List<String> names = new ArrayList<>();
+        for (ProjectModule module : modules) {
+            names.add(module.getName());
+        }
+        return names;
+    }
+
+    private static void write(Path root, String path, String content) throws IOException {
+        Path file = root.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
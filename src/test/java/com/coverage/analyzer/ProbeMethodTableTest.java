@@ -0,0 +1,106 @@
+package com.coverage.analyzer;
+
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.data.CRC64;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 探针查找表与 JaCoCo Analyzer 的一致性：逐个命中每个探针时查表最多得到一个方法，且包含 Analyzer 统计的方法；
+ * 命中全部探针时两者得到的方法相同。
+ * 被测类选用本项目中含分支、switch、try-with-resources 和 lambda 的类。
+ */
+public class ProbeMethodTableTest {
+    private static final Class<?>[] SUBJECTS = {
+            TestShard.class, ModuleDiscovery.class, LineCoverage.class, TestHistory.class, ReportMerger.class, CoverageDaemon.class};
+
+    @Test
+    public void everyProbeMapsToTheMethodAnalyzerReports() throws IOException {
+        for (Class<?> subject : SUBJECTS) {
+            byte[] classBytes = classBytes(subject);
+            ProbeMethodTable table = ProbeMethodTable.build(classBytes);
+            assertEquals(subject.getName(), table.getClassName());
+            assertTrue(table.getProbeCount() > 0);
+
+            for (int probe = 0; probe < table.getProbeCount(); probe++) {
+                boolean[] probes = new boolean[table.getProbeCount()];
+                probes[probe] = true;
+                List<String> covered = new ArrayList<>();
+                assertTrue(table.collectCoveredMethods(probes, covered));
+                // Analyzer 过滤掉的代码（如 try-with-resources 生成的关闭逻辑）中的探针单独命中时
+                // Analyzer 不计覆盖，查找表仍归到所在方法，因此这里只要求 Analyzer 的结果被包含
+                String message = subject.getName() + " probe " + probe;
+                assertTrue(message, covered.size() <= 1);
+                assertTrue(message, covered.containsAll(analyzerCoveredMethods(classBytes, probes)));
+            }
+
+            // 全部命中时每个方法恰好追加一次
+            boolean[] all = new boolean[table.getProbeCount()];
+            Arrays.fill(all, true);
+            List<String> covered = new ArrayList<>();
+            assertTrue(table.collectCoveredMethods(all, covered));
+            assertEquals(table.getMethodCount(), covered.size());
+            assertEquals(analyzerCoveredMethods(classBytes, all), new TreeSet<>(covered));
+        }
+    }
+
+    @Test
+    public void mismatchedProbeArrayIsRejected() throws IOException {
+        ProbeMethodTable table = ProbeMethodTable.build(classBytes(ModuleDiscovery.class));
+        // 类字节与执行数据不匹配时不追加任何方法
+        List<String> none = new ArrayList<>();
+        assertFalse(table.collectCoveredMethods(new boolean[table.getProbeCount() + 1], none));
+        assertEquals(Collections.emptyList(), none);
+    }
+
+    private static TreeSet<String> analyzerCoveredMethods(byte[] classBytes, boolean[] probes) throws IOException {
+        ExecutionDataStore store = new ExecutionDataStore();
+        CoverageBuilder builder = new CoverageBuilder();
+        String className = new ClassReader(classBytes).getClassName();
+        store.put(new ExecutionData(CRC64.classId(classBytes), className, probes.clone()));
+        new Analyzer(store, builder).analyzeClass(classBytes, className);
+
+        TreeSet<String> covered = new TreeSet<>();
+        for (IClassCoverage classCoverage : builder.getClasses()) {
+            for (IMethodCoverage method : classCoverage.getMethods()) {
+                if (method.getMethodCounter().getCoveredCount() > 0
+                        && MethodCoverageMapper.isMappedMethod(method.getName())) {
+                    covered.add(MethodCoverageMapper.methodId(
+                            className.replace('/', '.'), method.getName(), method.getDesc()));
+                }
+            }
+        }
+        return covered;
+    }
+
+    private static byte[] classBytes(Class<?> subject) throws IOException {
+        String resource = "/" + subject.getName().replace('.', '/') + ".class";
+        try (InputStream in = subject.getResourceAsStream(resource)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.CoverageResult;
+import com.coverage.analyzer.models.ProjectModel;
+import com.coverage.analyzer.models.ProjectStats;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * 分片报告合并：JSON 与二进制报告混合输入、重复测试去重、没有正常结束的测试的取舍。
+ */
+public class ReportMergerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void mergesJsonAndBinaryShards() throws IOException {
+        ProjectStats stats = new ProjectStats();
+        stats.setLocation("/repo");
+        stats.addJavaFiles(4);
+        stats.addClasses(5);
+        stats.addMethods(6);
+
+        Path first = folder.newFolder("shard1").toPath();
+        try (StreamingResultExporter report = new StreamingResultExporter(first, stats, 7)) {
+            report.onCoverage("p.ATest#a", Collections.singletonList("p.Foo#a()V"));
+            report.onIncomplete("p.ATest#hung", CoverageResult.TIMED_OUT);
+            report.onIncomplete("p.ATest#flaky", CoverageResult.WORKER_FAILED);
+        }
+
+        Path second = folder.newFolder("shard2").toPath();
+        try (StreamingResultExporter report = new StreamingResultExporter(second, new ProjectStats(), 0)) {
+            // 重复的测试只保留先合并的结果
+            report.onCoverage("p.ATest#a", Collections.singletonList("p.Other#x()V"));
+            report.onCoverage("p.BTest#b", Arrays.asList("p.Foo#a()V", "p.Bar#b()V"));
+        }
+
+        CoverageResult binaryResult = new CoverageResult();
+        binaryResult.addCoverage("p.ATest#flaky", Collections.singletonList("p.Bar#b()V"));
+        binaryResult.addCoverage("p.CTest#c", Collections.<String>emptyList());
+        Path binary = folder.getRoot().toPath().resolve(BinaryCoverageReport.FILE_NAME);
+        BinaryCoverageReport.write(binary, new ProjectModel(null, new ProjectStats(), Collections.<String>emptyList()),
+                binaryResult);
+
+        Path output = folder.newFolder("merged").toPath();
+        new ReportMerger(output).merge(Arrays.asList(
+                first.resolve("coverage_report.json"), second.resolve("coverage_report.json"), binary));
+
+        JsonObject merged = new Gson().fromJson(new String(
+                Files.readAllBytes(output.resolve("coverage_report.json")), StandardCharsets.UTF_8), JsonObject.class);
+        assertEquals("/repo", merged.get("location").getAsString());
+        JsonObject repository = merged.getAsJsonObject("stat_of_repository");
+        assertEquals(5, repository.get("num_classes").getAsInt());
+        assertEquals(7, repository.get("num_test_methods").getAsInt());
+
+        JsonObject coverage = merged.getAsJsonObject("test_coverage_against_methods");
+        assertEquals(new LinkedHashSet<>(Arrays.asList("p.ATest#a", "p.BTest#b", "p.ATest#flaky", "p.CTest#c")),
+                coverage.keySet());
+        assertEquals("p.Foo#a()V", coverage.getAsJsonArray("p.ATest#a").get(0).getAsString());
+        assertEquals(2, coverage.getAsJsonArray("p.BTest#b").size());
+
+        // 其他分片中有结果的测试不再列为没有正常结束
+        JsonObject incomplete = merged.getAsJsonObject("incomplete_tests");
+        assertEquals(Collections.singleton("p.ATest#hung"), incomplete.keySet());
+        assertEquals(CoverageResult.TIMED_OUT, incomplete.get("p.ATest#hung").getAsString());
+    }
+
+    @Test
+    public void refusesToOverwriteAnInputReport() throws IOException {
+        Path shard = folder.newFolder("shard").toPath();
+        try (StreamingResultExporter report = new StreamingResultExporter(shard, new ProjectStats(), 1)) {
+            report.onCoverage("p.ATest#a", Collections.<String>emptyList());
+        }
+        byte[] before = Files.readAllBytes(shard.resolve("coverage_report.json"));
+
+        try {
+            new ReportMerger(shard).merge(Collections.singletonList(shard.resolve("coverage_report.json")));
+            fail("merged a report onto itself");
+        } catch (IOException expected) {
+            assertEquals(Arrays.toString(before),
+                    Arrays.toString(Files.readAllBytes(shard.resolve("coverage_report.json"))));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.CoverageResult;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * coverage_index.bin 的往返校验：随机覆盖矩阵写出索引后，每个方法（含按方法名匹配全部重载）
+ * 的查询结果与直接倒排覆盖矩阵得到的结果一致。
+ */
+public class ReverseCoverageIndexTest {
+    private static final int TESTS = 5000;
+    private static final int METHODS = 20000;
+    private static final String[] DESCRIPTORS = {"()V", "(I)V", "(Ljava/lang/String;)I", "(II)J"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void randomMatrixMatchesBruteForceInversion() throws Exception {
+        Random random = new Random(20240611L);
+        List<String> methods = new ArrayList<>();
+        for (int i = 0; i < METHODS; i++) {
+            methods.add(methodName(i));
+        }
+        // 少数热点方法被大部分测试覆盖，倒排表中出现多字节 varint 和很长的列表
+        List<String> hotMethods = methods.subList(0, 40);
+
+        CoverageResult coverageResult = new CoverageResult();
+        Map<String, List<String>> expected = new TreeMap<>();
+        for (int test = 0; test < TESTS; test++) {
+            String testMethod = "pkg.T" + (test % 97) + "Test#test" + test;
+            Set<String> covered = new LinkedHashSet<>();
+            int count = random.nextInt(30);
+            for (int i = 0; i < count; i++) {
+                covered.add(methods.get(random.nextInt(METHODS)));
+            }
+            for (String hot : hotMethods) {
+                if (random.nextInt(4) != 0) {
+                    covered.add(hot);
+                }
+            }
+            coverageResult.addCoverage(testMethod, new ArrayList<>(covered));
+            for (String method : covered) {
+                expected.computeIfAbsent(method, key -> new ArrayList<>()).add(testMethod);
+            }
+        }
+
+        Path indexFile = folder.getRoot().toPath().resolve(ReverseCoverageIndex.FILE_NAME);
+        ReverseCoverageIndex.write(indexFile, coverageResult);
+        ReverseCoverageIndex index = ReverseCoverageIndex.open(indexFile);
+
+        assertEquals(TESTS, index.getTestCount());
+        assertEquals(expected.size(), index.getMethodCount());
+        for (String method : methods) {
+            List<String> tests = expected.get(method);
+            assertEquals(method, tests != null ? tests : Collections.<String>emptyList(), index.findTests(method));
+        }
+
+        // 不带描述符时合并所有重载，按测试顺序去重
+        Map<String, Integer> testOrder = new HashMap<>();
+        for (String testMethod : coverageResult.getTestMethods()) {
+            testOrder.put(testMethod, testOrder.size());
+        }
+        Map<String, Set<String>> byName = new TreeMap<>();
+        for (Map.Entry<String, List<String>> entry : expected.entrySet()) {
+            String name = entry.getKey().substring(0, entry.getKey().indexOf('('));
+            byName.computeIfAbsent(name, key -> new LinkedHashSet<>()).addAll(entry.getValue());
+        }
+        for (Map.Entry<String, Set<String>> entry : byName.entrySet()) {
+            List<String> tests = new ArrayList<>(entry.getValue());
+            tests.sort(Comparator.comparing(testOrder::get));
+            assertEquals(entry.getKey(), tests, index.findTests(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void methodNameDoesNotMatchLongerNames() throws Exception {
+        CoverageResult coverageResult = new CoverageResult();
+        coverageResult.addCoverage("pkg.ATest#a", Arrays.asList("pkg.Foo#bar()V", "pkg.Foo#barBaz()V"));
+        coverageResult.addCoverage("pkg.ATest#b", Collections.singletonList("pkg.Foo#barBaz()V"));
+        coverageResult.addCoverage("pkg.ATest#c", Collections.singletonList("pkg.Foo#bar(I)V"));
+        coverageResult.addCoverage("pkg.ATest#d", Collections.<String>emptyList());
+
+        Path indexFile = folder.getRoot().toPath().resolve(ReverseCoverageIndex.FILE_NAME);
+        ReverseCoverageIndex.write(indexFile, coverageResult);
+        ReverseCoverageIndex index = ReverseCoverageIndex.open(indexFile);
+
+        assertEquals(Arrays.asList("pkg.ATest#a", "pkg.ATest#c"), index.findTests("pkg.Foo#bar"));
+        assertEquals(Collections.singletonList("pkg.ATest#a"), index.findTests("pkg.Foo#bar()V"));
+        assertEquals(Arrays.asList("pkg.ATest#a", "pkg.ATest#b"), index.findTests("pkg.Foo#barBaz"));
+        assertEquals(Collections.<String>emptyList(), index.findTests("pkg.Foo#ba"));
+        assertEquals(Collections.<String>emptyList(), index.findTests("pkg.Zed#bar"));
+    }
+
+    private static String methodName(int i) {
+        // 每个方法名有 1 到 4 个重载，如 pkg.C12#m3(I)V
+        int nameIndex = i / 4;
+        return "pkg.C" + (nameIndex / 50) + "#m" + (nameIndex % 50) + DESCRIPTORS[i % 4];
+    }
+}
@@ -0,0 +1,79 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.CoverageResult;
+import com.coverage.analyzer.models.ProjectStats;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * 流式报告的闭合括号：每写出一条记录文件都是合法的 JSON，关闭后补上没有正常结束的测试。
+ */
+public class StreamingResultExporterTest {
+    private final Gson gson = new Gson();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void fileIsValidJsonAfterEveryEntry() throws IOException {
+        Path output = folder.getRoot().toPath();
+        ProjectStats stats = new ProjectStats();
+        stats.setLocation("/repo");
+        stats.addClasses(3);
+        try (StreamingResultExporter exporter = new StreamingResultExporter(output, stats, 3)) {
+            JsonObject report = read(output);
+            assertEquals("/repo", report.get("location").getAsString());
+            assertEquals(3, report.getAsJsonObject("stat_of_repository").get("num_test_methods").getAsInt());
+            assertEquals(0, coverage(report).size());
+
+            exporter.onCoverage("p.ATest#a", Arrays.asList("p.Foo#a()V", "p.Foo#b(I)V"));
+            assertEquals(Collections.singleton("p.ATest#a"), coverage(read(output)).keySet());
+
+            // 进程在这里被终止时，没有正常结束的测试还只在内存中，文件里只有已完成的记录
+            exporter.onIncomplete("p.ATest#hung", CoverageResult.TIMED_OUT);
+            exporter.onCoverage("p.ATest#b", Collections.<String>emptyList());
+            JsonObject partial = read(output);
+            assertEquals(2, coverage(partial).size());
+            assertEquals(0, coverage(partial).getAsJsonArray("p.ATest#b").size());
+            assertFalse(partial.has("incomplete_tests"));
+        }
+
+        JsonObject report = read(output);
+        JsonArray methods = coverage(report).getAsJsonArray("p.ATest#a");
+        assertEquals("p.Foo#a()V", methods.get(0).getAsString());
+        assertEquals("p.Foo#b(I)V", methods.get(1).getAsString());
+        assertEquals(CoverageResult.TIMED_OUT,
+                report.getAsJsonObject("incomplete_tests").get("p.ATest#hung").getAsString());
+        assertFalse(coverage(report).has("p.ATest#hung"));
+    }
+
+    private JsonObject read(Path output) throws IOException {
+        // Gson 的宽松模式会忽略尾部多余内容，这里按严格的 JSON 完整解析
+        String text = new String(Files.readAllBytes(output.resolve("coverage_report.json")), StandardCharsets.UTF_8);
+        JsonReader reader = new JsonReader(new StringReader(text));
+        JsonObject report = gson.fromJson(reader, JsonObject.class);
+        assertEquals(JsonToken.END_DOCUMENT, reader.peek());
+        return report;
+    }
+
+    private static JsonObject coverage(JsonObject report) {
+        return report.getAsJsonObject("test_coverage_against_methods");
+    }
+}
@@ -0,0 +1,105 @@
+package com.coverage.analyzer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 测试耗时历史：自适应超时、连续超时隔离、按耗时排序和文件往返。
+ */
+public class TestHistoryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void timeoutFollowsRecordedDuration() {
+        TestHistory history = new TestHistory();
+        assertEquals(120, history.timeoutSeconds("p.ATest#new", 120));
+
+        history.record("p.ATest#fast", 50, false);
+        assertEquals(30, history.timeoutSeconds("p.ATest#fast", 120));
+        // 默认超时低于下限时以默认超时为准
+        assertEquals(10, history.timeoutSeconds("p.ATest#fast", 10));
+
+        history.record("p.ATest#slow", 5000, false);
+        assertEquals(50, history.timeoutSeconds("p.ATest#slow", 120));
+        // 滑动平均：(5000 + 7000) / 2
+        history.record("p.ATest#slow", 7000, false);
+        assertEquals(60, history.timeoutSeconds("p.ATest#slow", 120));
+
+        history.record("p.ATest#huge", 60000, false);
+        assertEquals(120, history.timeoutSeconds("p.ATest#huge", 120));
+    }
+
+    @Test
+    public void consecutiveTimeoutsQuarantineUntilTheTestPasses() {
+        TestHistory history = new TestHistory();
+        history.record("p.ATest#hang", 100, false);
+        history.record("p.ATest#hang", 120000, true);
+        // 刚超时过的测试恢复默认超时，还没有被隔离
+        assertEquals(120, history.timeoutSeconds("p.ATest#hang", 120));
+        assertFalse(history.isQuarantined("p.ATest#hang"));
+
+        history.record("p.ATest#hang", 120000, true);
+        assertTrue(history.isQuarantined("p.ATest#hang"));
+
+        history.record("p.ATest#hang", 100, false);
+        assertFalse(history.isQuarantined("p.ATest#hang"));
+        assertFalse(history.isQuarantined("p.ATest#unknown"));
+    }
+
+    @Test
+    public void ordersLongestFirstWithUnknownTestsAhead() {
+        TestHistory history = new TestHistory();
+        history.record("p.ATest#short", 10, false);
+        history.record("p.ATest#long", 9000, false);
+        history.record("p.ATest#tie", 10, false);
+        assertEquals(Arrays.asList("p.ATest#new", "p.ATest#long", "p.ATest#short", "p.ATest#tie"),
+                history.orderLongestFirst(Arrays.asList("p.ATest#short", "p.ATest#new", "p.ATest#tie", "p.ATest#long")));
+    }
+
+    @Test
+    public void roundTripsThroughTheOutputDirectory() throws IOException {
+        Path output = folder.getRoot().toPath();
+        TestHistory history = new TestHistory();
+        history.record("p.ATest#slow", 5000, false);
+        history.record("p.ATest#hang", 100, true);
+        history.record("p.ATest#hang", 100, true);
+        history.save(output);
+
+        TestHistory loaded = TestHistory.load(output);
+        assertEquals(50, loaded.timeoutSeconds("p.ATest#slow", 120));
+        assertTrue(loaded.isQuarantined("p.ATest#hang"));
+
+        Files.write(output.resolve(TestHistory.FILE_NAME), "{\"tests\":{\"p.ATest#x\":{}}}".getBytes(StandardCharsets.UTF_8));
+        TestHistory unreadable = TestHistory.load(output);
+        assertEquals(120, unreadable.timeoutSeconds("p.ATest#slow", 120));
+        assertFalse(unreadable.isQuarantined("p.ATest#hang"));
+    }
+
+    @Test
+    public void recorderMarksTheRunningTestAsTimedOut() {
+        TestHistory history = new TestHistory();
+        history.record("p.ATest#stuck", 100, true);
+
+        TestHistory.Recorder recorder = new TestHistory.Recorder();
+        recorder.started("p.ATest#done");
+        recorder.finished("p.ATest#done");
+        recorder.started("p.ATest#stuck");
+        recorder.commitTo(history, true);
+
+        assertTrue(history.isQuarantined("p.ATest#stuck"));
+        assertEquals(30, history.timeoutSeconds("p.ATest#done", 120));
+        assertFalse(history.isQuarantined("p.ATest#done"));
+    }
+}
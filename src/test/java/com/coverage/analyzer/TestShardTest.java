@@ -0,0 +1,61 @@
+package com.coverage.analyzer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 测试分片：各分片互不重叠且合起来是全部测试，分配结果不随测试列表变化。
+ */
+public class TestShardTest {
+    @Test
+    public void shardsPartitionTheTestList() {
+        List<String> tests = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            tests.add("pkg.T" + (i % 37) + "Test#test" + i);
+        }
+
+        List<String> union = new ArrayList<>();
+        for (int index = 1; index <= 8; index++) {
+            List<String> selected = TestShard.parse(index + "/8").select(tests);
+            assertTrue("shard " + index + " is empty", !selected.isEmpty());
+            union.addAll(selected);
+        }
+        Collections.sort(union);
+        List<String> sorted = new ArrayList<>(tests);
+        Collections.sort(sorted);
+        assertEquals(sorted, union);
+    }
+
+    @Test
+    public void assignmentIsFixedAndIgnoresOtherTests() {
+        // String.hashCode 的算法由规范固定，分配结果在任何机器上都相同
+        TestShard shard = new TestShard(1, 4);
+        assertEquals(Collections.singletonList("p.ATest#b"),
+                shard.select(Arrays.asList("p.ATest#a", "p.ATest#b", "p.BTest#c")));
+        assertEquals(Collections.singletonList("p.ATest#b"),
+                shard.select(Arrays.asList("p.ZTest#added", "p.ATest#b", "p.BTest#c")));
+        assertTrue(new TestShard(4, 4).contains("p.ATest#a"));
+        assertTrue(new TestShard(3, 4).contains("p.BTest#c"));
+    }
+
+    @Test
+    public void parseRejectsInvalidShards() {
+        assertEquals("2/8", TestShard.parse(" 2 / 8 ").toString());
+        for (String value : Arrays.asList("0/4", "5/4", "1/0", "3", "1/2/3", "a/4")) {
+            try {
+                TestShard.parse(value);
+                fail("accepted " + value);
+            } catch (IllegalArgumentException expected) {
+                // 分片编号从 1 开始且不超过分片数
+            }
+        }
+    }
+}
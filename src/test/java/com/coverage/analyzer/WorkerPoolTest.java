@@ -0,0 +1,129 @@
+package com.coverage.analyzer;
+
+import com.coverage.analyzer.models.CoverageResult;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 父进程一侧的工作进程协议：子进程换成按测试名应答的 {@link FakeWorker}，
+ * 检查正常结果、子进程内超时、崩溃、无法解析和错位的响应、行覆盖和退出时的指标快照。
+ */
+public class WorkerPoolTest {
+    @Test
+    public void collectsResultsAndRestartsFailedWorkers() throws InterruptedException {
+        List<String> tests = Arrays.asList(
+                "p.ATest#ok", "p.ATest#crash", "p.ATest#after", "p.ATest#garbage", "p.ATest#hung",
+                "p.ATest#wrongId", "p.ATest#lines", "p.ATest#last");
+        long failuresBefore = counter("worker_failures");
+        long closedBefore = counter("fake_workers_closed");
+
+        WorkerPool pool = new WorkerPool(Paths.get("."), null, 2);
+        pool.setWorkerMainClass(FakeWorker.class.getName());
+        pool.setTestTimeout(45);
+        TestHistory history = new TestHistory();
+        history.record("p.ATest#ok", 100, false);
+        pool.setHistory(history);
+        CoverageResult result = pool.collectCoverage(tests);
+
+        // 按历史收紧的超时随请求发给子进程
+        assertEquals(Collections.singletonList("p.Foo#ok()V/30"), result.getCoveredMethods("p.ATest#ok"));
+        assertEquals(Collections.singletonList("p.Foo#after()V/45"), result.getCoveredMethods("p.ATest#after"));
+        assertEquals(Collections.singletonList("p.Foo#last()V/45"), result.getCoveredMethods("p.ATest#last"));
+
+        Map<String, String> expectedIncomplete = new HashMap<>();
+        expectedIncomplete.put("p.ATest#crash", CoverageResult.WORKER_FAILED);
+        expectedIncomplete.put("p.ATest#garbage", CoverageResult.WORKER_FAILED);
+        expectedIncomplete.put("p.ATest#wrongId", CoverageResult.WORKER_FAILED);
+        expectedIncomplete.put("p.ATest#hung", CoverageResult.TIMED_OUT);
+        assertEquals(expectedIncomplete, new HashMap<>(result.getIncompleteTests()));
+        assertEquals(3, counter("worker_failures") - failuresBefore);
+
+        LineCoverage lines = pool.takeLineCoverage("p.ATest#lines");
+        assertNotNull(lines);
+        assertEquals("3+2", lines.toJson().getAsJsonObject("lines").get("p.Foo").getAsString());
+        assertNull(pool.takeLineCoverage("p.ATest#ok"));
+
+        // 子进程内超时的测试计入历史，连续两次后进入隔离
+        history.record("p.ATest#hung", 1, true);
+        assertTrue(history.isQuarantined("p.ATest#hung"));
+        // 正常退出的子进程在关闭输入后写出指标快照，父进程合并
+        assertTrue(counter("fake_workers_closed") - closedBefore >= 1);
+    }
+
+    private static long counter(String name) {
+        JsonObject counters = PipelineMetrics.snapshot().getAsJsonObject("counters");
+        return counters.has(name) ? counters.get(name).getAsLong() : 0;
+    }
+
+    /**
+     * 模拟的子进程：按测试名中 # 之后的部分决定应答方式，方法列表中附带收到的超时秒数。
+     */
+    public static class FakeWorker {
+        public static void main(String[] args) throws Exception {
+            BufferedReader requests = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String request;
+            while ((request = requests.readLine()) != null) {
+                String[] fields = request.split("\t");
+                String testMethod = fields[0];
+                String name = testMethod.substring(testMethod.indexOf('#') + 1);
+                JsonObject response = new JsonObject();
+                response.addProperty("test", testMethod);
+                response.addProperty("millis", 7);
+                response.addProperty("timed_out", false);
+                JsonArray methods = new JsonArray();
+                switch (name) {
+                    case "crash":
+                        System.exit(3);
+                        break;
+                    case "garbage":
+                        System.out.println("not json");
+                        System.out.flush();
+                        continue;
+                    case "wrongId":
+                        response.addProperty("test", "p.ATest#other");
+                        break;
+                    case "hung":
+                        response.addProperty("timed_out", true);
+                        response.addProperty("incomplete", CoverageResult.TIMED_OUT);
+                        break;
+                    case "lines":
+                        JsonObject lines = new JsonObject();
+                        lines.addProperty("p.Foo", "3+2");
+                        response.add("lines", lines);
+                        response.add("branches", new JsonObject());
+                        break;
+                    default:
+                        methods.add("p.Foo#" + name + "()V/" + fields[1]);
+                }
+                response.add("methods", methods);
+                System.out.println(response);
+                System.out.flush();
+            }
+
+            JsonObject counters = new JsonObject();
+            counters.addProperty("fake_workers_closed", 1);
+            JsonObject snapshot = new JsonObject();
+            snapshot.add("counters", counters);
+            JsonObject metrics = new JsonObject();
+            metrics.add("metrics", snapshot);
+            System.out.println(metrics);
+            System.out.flush();
+        }
+    }
+}